@@ -0,0 +1,55 @@
+package fp_csharp_unity.unity.benchmarks;
+
+import android.content.Context;
+import android.view.View;
+import fp_csharp_unity.unity.ads.BannerMode;
+import fp_csharp_unity.unity.ads.PercentBannerFrame;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measure and layout pass of the banner frame {@code BannerBase.addToUI} attaches banners to.
+ * The Android views are stubs, so this only covers the plugin's own layout code.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BannerLayoutBenchmark {
+    private static final int WIDTH = 1080, HEIGHT = 2340;
+
+    @Param({"percentile", "fixed", "wrap"})
+    public String mode;
+
+    private PercentBannerFrame frame;
+    private int widthSpec, heightSpec;
+
+    @Setup
+    public void setup() {
+        Context context = new Context();
+        BannerMode.Mode bannerMode;
+        switch (mode) {
+            case "percentile": bannerMode = new BannerMode.PercentileSize(0.8f, 0.1f); break;
+            case "fixed": bannerMode = new BannerMode.FixedSize(320, 50); break;
+            case "wrap": bannerMode = BannerMode.WrapContent.instance; break;
+            default: throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        frame = new PercentBannerFrame(context, bannerMode, false);
+        frame.addView(new View(context));
+        widthSpec = View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY);
+        heightSpec = View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY);
+    }
+
+    @Benchmark
+    public int measureAndLayout() {
+        frame.measure(widthSpec, heightSpec);
+        frame.layout(0, 0, WIDTH, HEIGHT);
+        return frame.getChildAt(0).getTop();
+    }
+}
@@ -0,0 +1,56 @@
+package fp_csharp_unity.unity.benchmarks;
+
+import fp_csharp_unity.unity.util.GCFreeHashMap;
+import fp_csharp_unity.unity.util.StringStringFlatMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Building a map from the key and value arrays C# passes over JNI, then reading one entry. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class GCFreeHashMapBenchmark {
+    @Param({"4", "16", "64"})
+    public int size;
+
+    private String[] keys, values;
+    private String lookupKey;
+    private final StringStringFlatMap flatMap = new StringStringFlatMap();
+
+    @Setup
+    public void setup() {
+        keys = new String[size];
+        values = new String[size];
+        for (int idx = 0; idx < size; idx++) {
+            keys[idx] = "key_" + idx;
+            values[idx] = "value_" + idx;
+        }
+        lookupKey = keys[size / 2];
+    }
+
+    @Benchmark
+    public String constructor() {
+        return new GCFreeHashMap<>(keys, values).map.get(lookupKey);
+    }
+
+    @Benchmark
+    public String pooled() {
+        GCFreeHashMap<String, String> map = GCFreeHashMap.acquire(keys, values);
+        String value = map.map.get(lookupKey);
+        map.release();
+        return value;
+    }
+
+    @Benchmark
+    public String flatMap() {
+        flatMap.reset(keys, values);
+        return flatMap.get(lookupKey);
+    }
+}
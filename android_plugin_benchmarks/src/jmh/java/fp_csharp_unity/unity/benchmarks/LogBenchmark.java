@@ -0,0 +1,79 @@
+package fp_csharp_unity.unity.benchmarks;
+
+import fp_csharp_unity.unity.logging.ILogger;
+import fp_csharp_unity.unity.logging.Log;
+import fp_csharp_unity.unity.logging.LoggerRegistry;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Fan-out of {@link Log#log} to the registered loggers. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class LogBenchmark {
+    /** Logger that hands the message to JMH, so the call is not optimized away. */
+    public static class BlackholeLogger implements ILogger {
+        private final Blackhole blackhole;
+        private final int minPriority;
+
+        public BlackholeLogger(Blackhole blackhole, int minPriority) {
+            this.blackhole = blackhole;
+            this.minPriority = minPriority;
+        }
+
+        @Override
+        public void log(int priority, String tag, String message) { blackhole.consume(message); }
+
+        @Override
+        public void log(int priority, String tag, String message, Throwable throwable) {
+            blackhole.consume(message);
+            blackhole.consume(throwable);
+        }
+
+        @Override public int minPriority() { return minPriority; }
+    }
+
+    @Param({"1", "4"})
+    public int loggerCount;
+
+    @Param({"false", "true"})
+    public boolean async;
+
+    private LoggerRegistry.Registration[] registrations;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        // The Android logger only discards messages in the stubs, keep the fan-out to our loggers.
+        Log.androidLogger.unregister();
+        registrations = new LoggerRegistry.Registration[loggerCount];
+        for (int idx = 0; idx < loggerCount; idx++) {
+            registrations[idx] = Log.register(new BlackholeLogger(blackhole, Log.INFO));
+        }
+        if (async) Log.enableAsync(4096, 256, fp_csharp_unity.unity.logging.AsyncLogDispatcher.OverflowPolicy.DROP);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (async) Log.disableAsync();
+        for (LoggerRegistry.Registration registration : registrations) registration.unregister();
+    }
+
+    @Benchmark
+    public void accepted() {
+        Log.log(Log.INFO, "Benchmark", "message");
+    }
+
+    @Benchmark
+    public void filteredOut() {
+        Log.log(Log.DEBUG, "Benchmark", "message");
+    }
+}
@@ -0,0 +1,79 @@
+package fp_csharp_unity.unity.benchmarks;
+
+import fp_csharp_unity.unity.util.StringUtil;
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class StringUtilBenchmark {
+    private static final int SHIFT_BY = 3;
+
+    @Param({"16", "256"})
+    public int length;
+
+    private String encoded;
+    private String[] encodedArray;
+    private String encodedBlob;
+    private CharBuffer charBuffer;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder(length);
+        for (int idx = 0; idx < length; idx++) sb.append((char) ('a' + idx % 26 - SHIFT_BY));
+        encoded = sb.toString();
+
+        encodedArray = new String[16];
+        StringBuilder blob = new StringBuilder();
+        for (int idx = 0; idx < encodedArray.length; idx++) {
+            encodedArray[idx] = encoded;
+            if (idx != 0) blob.append(',');
+            blob.append(encoded);
+        }
+        encodedBlob = blob.toString();
+
+        charBuffer = CharBuffer.allocate(length);
+        bytes = new byte[length * 3];
+    }
+
+    @Benchmark
+    public String single() {
+        return StringUtil.shiftCharValues(encoded, SHIFT_BY);
+    }
+
+    @Benchmark
+    public String cached() {
+        return StringUtil.shiftCharValuesCached(encoded, SHIFT_BY);
+    }
+
+    @Benchmark
+    public String[] array() {
+        return StringUtil.shiftCharValues(encodedArray, SHIFT_BY);
+    }
+
+    @Benchmark
+    public String[] delimited() {
+        return StringUtil.shiftDelimited(encodedBlob, ',', SHIFT_BY);
+    }
+
+    @Benchmark
+    public int intoCharBuffer() {
+        charBuffer.clear();
+        return StringUtil.shiftCharValues(encoded, SHIFT_BY, charBuffer);
+    }
+
+    @Benchmark
+    public int intoUtf8Bytes() {
+        return StringUtil.shiftCharValuesUtf8(encoded, SHIFT_BY, bytes, 0);
+    }
+}
@@ -0,0 +1,9 @@
+package android.content.res;
+
+import android.util.DisplayMetrics;
+
+public class Resources {
+    private final DisplayMetrics metrics = new DisplayMetrics();
+
+    public DisplayMetrics getDisplayMetrics() { return metrics; }
+}
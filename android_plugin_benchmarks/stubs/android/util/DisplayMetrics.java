@@ -0,0 +1,6 @@
+package android.util;
+
+public class DisplayMetrics {
+    public float density = 2.625f;
+    public int widthPixels = 1080, heightPixels = 2340;
+}
@@ -0,0 +1,70 @@
+package android.view;
+
+import android.content.Context;
+
+/** Just enough of the measure and layout passes for {@code PercentBannerFrame}. */
+public class View {
+    public static final int VISIBLE = 0, INVISIBLE = 4, GONE = 8;
+
+    public static class MeasureSpec {
+        private static final int MODE_SHIFT = 30, MODE_MASK = 0x3 << MODE_SHIFT;
+        public static final int UNSPECIFIED = 0, EXACTLY = 1 << MODE_SHIFT, AT_MOST = 2 << MODE_SHIFT;
+
+        public static int makeMeasureSpec(int size, int mode) { return (size & ~MODE_MASK) | (mode & MODE_MASK); }
+        public static int getMode(int measureSpec) { return measureSpec & MODE_MASK; }
+        public static int getSize(int measureSpec) { return measureSpec & ~MODE_MASK; }
+    }
+
+    private final Context context;
+    private int visibility = VISIBLE;
+    private int measuredWidth, measuredHeight;
+    private int left, top, right, bottom;
+
+    public View(Context context) { this.context = context; }
+
+    public Context getContext() { return context; }
+
+    public int getVisibility() { return visibility; }
+    public void setVisibility(int visibility) { this.visibility = visibility; }
+
+    public final void measure(int widthMeasureSpec, int heightMeasureSpec) {
+        onMeasure(widthMeasureSpec, heightMeasureSpec);
+    }
+
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(
+            getDefaultSize(0, widthMeasureSpec), getDefaultSize(0, heightMeasureSpec)
+        );
+    }
+
+    protected final void setMeasuredDimension(int measuredWidth, int measuredHeight) {
+        this.measuredWidth = measuredWidth;
+        this.measuredHeight = measuredHeight;
+    }
+
+    public final int getMeasuredWidth() { return measuredWidth; }
+    public final int getMeasuredHeight() { return measuredHeight; }
+
+    public void layout(int l, int t, int r, int b) {
+        boolean changed = l != left || t != top || r != right || b != bottom;
+        left = l; top = t; right = r; bottom = b;
+        onLayout(changed, l, t, r, b);
+    }
+
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {}
+
+    public final int getLeft() { return left; }
+    public final int getTop() { return top; }
+    public final int getWidth() { return right - left; }
+    public final int getHeight() { return bottom - top; }
+
+    public static int getDefaultSize(int size, int measureSpec) {
+        switch (MeasureSpec.getMode(measureSpec)) {
+            case MeasureSpec.AT_MOST:
+            case MeasureSpec.EXACTLY:
+                return MeasureSpec.getSize(measureSpec);
+            default:
+                return size;
+        }
+    }
+}
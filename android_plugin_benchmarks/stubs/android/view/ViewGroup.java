@@ -0,0 +1,34 @@
+package android.view;
+
+import android.content.Context;
+import java.util.ArrayList;
+
+public abstract class ViewGroup extends View {
+    public static class LayoutParams {
+        public static final int MATCH_PARENT = -1, WRAP_CONTENT = -2;
+        public int width, height;
+
+        public LayoutParams(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private final ArrayList<View> children = new ArrayList<>();
+
+    public ViewGroup(Context context) { super(context); }
+
+    public void addView(View child) { children.add(child); }
+    public void removeView(View child) { children.remove(child); }
+    public int getChildCount() { return children.size(); }
+    public View getChildAt(int index) { return children.get(index); }
+
+    @Override
+    protected abstract void onLayout(boolean changed, int l, int t, int r, int b);
+
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
+    }
+
+    public boolean shouldDelayChildPressedState() { return true; }
+}
@@ -1,61 +1,125 @@
 package fp_csharp_unity.unity;
 
 import android.app.Activity;
-import android.content.Context;
-import android.content.Intent;
-import android.content.res.Configuration;
-import android.location.Address;
-import android.location.Geocoder;
-import android.location.Location;
-import android.location.LocationManager;
-import android.net.Uri;
 import com.unity3d.player.UnityPlayer;
+import fp_csharp_unity.unity.fns.Act1;
+import fp_csharp_unity.unity.location.CountryCodeResolver;
+import fp_csharp_unity.unity.share.ScreenshotShare;
+import fp_csharp_unity.unity.share.ShareProvider;
+import fp_csharp_unity.unity.util.PluginEventQueue;
+import fp_csharp_unity.unity.util.Utils;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
-import java.util.Locale;
+import java.nio.ByteBuffer;
 
 @SuppressWarnings("UnusedDeclaration")
 public class Bridge {
+  /**
+   * Shares an encoded PNG. The file is copied into the share cache in the background and shared
+   * through {@link ShareProvider}, as {@code file://} URIs are rejected by newer Android versions.
+   */
   public static void sharePNG(String path, String title, String sharerText) {
-    Intent shareIntent = new Intent();
-    shareIntent.setAction(Intent.ACTION_SEND);
-    shareIntent.putExtra(Intent.EXTRA_TEXT, sharerText);
-    shareIntent.putExtra(Intent.EXTRA_STREAM, Uri.fromFile(new File(path)));
-    shareIntent.setType("image/png");
-    shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-    UnityPlayer.currentActivity.startActivity(
-      Intent.createChooser(shareIntent, title)
+    ScreenshotShare.shareFile(UnityPlayer.currentActivity, new File(path), title, sharerText, null);
+  }
+
+  /**
+   * Shares raw RGBA pixels, see {@link ScreenshotShare#sharePixels}. Only copies the pixels on the
+   * calling thread.
+   *
+   * @return false if another share is still being prepared.
+   */
+  public static boolean shareRGBA(
+    ByteBuffer pixels, int width, int height, boolean flipVertically, String title, String sharerText,
+    Act1<Boolean> onChooserReady
+  ) {
+    return ScreenshotShare.sharePixels(
+      UnityPlayer.currentActivity, pixels, width, height, flipVertically, title, sharerText, onChooserReady
     );
   }
 
   public static boolean isTablet() {
-    Activity current = UnityPlayer.currentActivity;
-    Configuration cfg = current.getResources().getConfiguration();
-    int sizeFlag = cfg.screenLayout & Configuration.SCREENLAYOUT_SIZE_MASK;
+    return DeviceProfile.isTablet(DeviceProfile.get(UnityPlayer.currentActivity));
+  }
 
-    return sizeFlag == Configuration.SCREENLAYOUT_SIZE_XLARGE
-        || sizeFlag == Configuration.SCREENLAYOUT_SIZE_LARGE;
+  /** Packed device properties, see {@link DeviceProfile} for the layout. */
+  public static int[] deviceProfile() {
+    return DeviceProfile.get(UnityPlayer.currentActivity);
   }
 
+  /** {@code onChanged} gets the new {@link #deviceProfile()} whenever it changes. */
+  public static void addDeviceProfileListener(Act1<int[]> onChanged) {
+    DeviceProfile.addListener(onChanged);
+  }
+
+  public static void removeDeviceProfileListener(Act1<int[]> onChanged) {
+    DeviceProfile.removeListener(onChanged);
+  }
+
+  /**
+   * Blocks on the geocoder on a cache miss, prefer {@link #countryCodeFromLastKnownLocationAsync}.
+   *
+   * @throws SecurityException if the app has no location permission.
+   */
   public static String countryCodeFromLastKnownLocation() throws IOException {
-    Activity current = UnityPlayer.currentActivity;
-    LocationManager locationManager =
-            (LocationManager) current.getSystemService(Context.LOCATION_SERVICE);
-    Location location =
-            locationManager
-            .getLastKnownLocation(LocationManager.NETWORK_PROVIDER);
-    if (location != null && Geocoder.isPresent()) {
-      Geocoder gcd = new Geocoder(current, Locale.getDefault());
-      List<Address> addresses;
-      addresses = gcd.getFromLocation(location.getLatitude(), location.getLongitude(), 1);
-
-      if (addresses != null && !addresses.isEmpty()) {
-        Address address = addresses.get(0);
-        return address.getCountryCode();
+    return CountryCodeResolver.resolveBlocking(UnityPlayer.currentActivity);
+  }
+
+  /** Returns the cached country code immediately, or null if there is no fresh cached value. */
+  public static String cachedCountryCode() {
+    return CountryCodeResolver.cached(UnityPlayer.currentActivity);
+  }
+
+  /**
+   * Resolves the country code without blocking. {@code onResolved} runs immediately on a cache hit,
+   * otherwise on a background thread. It gets null if the country code can't be determined.
+   */
+  public static void countryCodeFromLastKnownLocationAsync(final Act1<String> onResolved) {
+    CountryCodeResolver.resolve(UnityPlayer.currentActivity, new Act1<String>() {
+      @Override
+      public void run(String code) {
+        DeviceProfile.onCountryCodeResolved(code);
+        onResolved.run(code);
       }
-    }
-    return null;
+    });
+  }
+
+  /** Direct buffer {@link #drainEvents()} writes into, see {@link PluginEventQueue#buffer()}. */
+  public static ByteBuffer eventBuffer() {
+    return PluginEventQueue.shared().buffer();
+  }
+
+  /**
+   * Drains {@link PluginEventQueue#shared()} into {@link #eventBuffer()}. Call once per frame.
+   *
+   * @return number of events written.
+   */
+  public static int drainEvents() {
+    return PluginEventQueue.shared().drain();
+  }
+
+  /** Strings of the events written by the last {@link #drainEvents()}, null for events without one. */
+  public static String[] drainedEventStrings() {
+    return PluginEventQueue.shared().drainedStrings();
+  }
+
+  /**
+   * Initializes the plugin subsystems, the non-critical ones after the first frames, see
+   * {@link PluginInitializer}. Returns right away, the start is posted to the UI thread, which
+   * {@link PluginInitializer#start} needs for its frame callbacks.
+   */
+  public static void startPlugin() {
+    final Activity activity = UnityPlayer.currentActivity;
+    Utils.runOnUiSafe("startPlugin", new Runnable() {
+      @Override
+      public void run() {
+        PluginInitializer.shared.registerDefaults();
+        PluginInitializer.shared.start(activity);
+      }
+    });
+  }
+
+  public static String pluginStartupReport() {
+    return PluginInitializer.shared.startupReport();
   }
 }
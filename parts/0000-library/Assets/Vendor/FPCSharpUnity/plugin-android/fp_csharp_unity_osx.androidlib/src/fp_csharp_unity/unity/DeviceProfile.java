@@ -0,0 +1,209 @@
+package fp_csharp_unity.unity;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.util.DisplayMetrics;
+import fp_csharp_unity.unity.fns.Act1;
+import fp_csharp_unity.unity.location.CountryCodeResolver;
+import fp_csharp_unity.unity.logging.Log;
+import java.lang.ref.WeakReference;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Snapshot of device properties, packed into an {@code int[]} so C# gets all of them in one JNI call.
+ * <p>
+ * Computed on first use from the given context, which should be the activity, so window dependent
+ * values are right in multi-window mode. Recomputed when the configuration of that context changes,
+ * another context is given or the country code gets resolved. Listeners get the new snapshot on
+ * every change. The country code is only read from {@link CountryCodeResolver#cached}, this never
+ * starts a location lookup.
+ * <p>
+ * Layout: the {@code IDX_*} fields, followed by the length prefixed strings the
+ * {@code IDX_*_OFFSET} fields point to. Strings are stored as one char per int, with a length of
+ * -1 for null.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class DeviceProfile {
+  public static final int
+    // Increases with every recomputed snapshot.
+    IDX_VERSION = 0,
+    // Configuration.SCREENLAYOUT_SIZE_*.
+    IDX_SCREEN_SIZE_CLASS = 1,
+    IDX_IS_TABLET = 2,
+    IDX_DENSITY_DPI = 3,
+    // DisplayMetrics.density * 1000.
+    IDX_DENSITY_MILLIS = 4,
+    IDX_WIDTH_PX = 5,
+    IDX_HEIGHT_PX = 6,
+    IDX_SMALLEST_WIDTH_DP = 7,
+    // Configuration.ORIENTATION_*.
+    IDX_ORIENTATION = 8,
+    IDX_MEMORY_CLASS_MB = 9,
+    IDX_LARGE_MEMORY_CLASS_MB = 10,
+    IDX_IS_LOW_RAM = 11,
+    IDX_SDK_INT = 12,
+    // Offset of the BCP 47 language tag of the primary locale.
+    IDX_LOCALE_OFFSET = 13,
+    // Offset of the cached country code, see CountryCodeResolver.cached.
+    IDX_COUNTRY_CODE_OFFSET = 14,
+    FIXED_SIZE = 15;
+
+  private static Context appContext;
+  // Context the current snapshot was computed from, usually the activity.
+  private static volatile WeakReference<Context> source = new WeakReference<>(null);
+  // configKey of the configuration the current snapshot was computed from.
+  private static volatile int currentConfigKey;
+  private static volatile int[] current;
+  private static int version;
+  private static final CopyOnWriteArrayList<Act1<int[]>> listeners = new CopyOnWriteArrayList<>();
+
+  private static final ComponentCallbacks componentCallbacks = new ComponentCallbacks() {
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) { invalidate(); }
+
+    @Override
+    public void onLowMemory() {}
+  };
+
+  private DeviceProfile() {}
+
+  /**
+   * Returns the current snapshot, computing it if there is none yet or if it is out of date for
+   * {@code context}. Do not modify the array.
+   */
+  public static int[] get(Context context) {
+    int[] profile = current;
+    // Multi-window resizes change the activity configuration without an application callback.
+    int configKey = configKey(context.getResources().getConfiguration());
+    if (profile != null && source.get() == context && currentConfigKey == configKey) return profile;
+
+    boolean changed;
+    synchronized (DeviceProfile.class) {
+      if (appContext == null) {
+        appContext = context.getApplicationContext();
+        appContext.registerComponentCallbacks(componentCallbacks);
+      }
+      profile = current;
+      if (profile != null && source.get() == context && currentConfigKey == configKey) return profile;
+      changed = profile != null;
+      source = new WeakReference<>(context);
+      profile = update(context);
+    }
+    if (changed) notifyListeners(profile);
+    return profile;
+  }
+
+  /** {@code listener} is called with the new snapshot, on the thread that caused the change. */
+  public static void addListener(Act1<int[]> listener) { listeners.add(listener); }
+
+  public static void removeListener(Act1<int[]> listener) { listeners.remove(listener); }
+
+  /** Recomputes the snapshot and notifies the listeners. */
+  public static void invalidate() {
+    int[] profile;
+    synchronized (DeviceProfile.class) {
+      if (appContext == null) return;
+      Context context = source.get();
+      profile = update(context == null ? appContext : context);
+    }
+    notifyListeners(profile);
+  }
+
+  /** Refreshes the snapshot if {@code code}, from a finished country code lookup, is not in it yet. */
+  public static void onCountryCodeResolved(String code) {
+    int[] profile = current;
+    if (code != null && profile != null && !code.equals(countryCode(profile))) invalidate();
+  }
+
+  // Guarded by DeviceProfile.class.
+  private static int[] update(Context context) {
+    int[] profile = compute(context, ++version);
+    currentConfigKey = configKey(context.getResources().getConfiguration());
+    current = profile;
+    return profile;
+  }
+
+  private static int configKey(Configuration cfg) {
+    int key = cfg.screenLayout;
+    key = 31 * key + cfg.orientation;
+    key = 31 * key + cfg.smallestScreenWidthDp;
+    key = 31 * key + cfg.screenWidthDp;
+    key = 31 * key + cfg.screenHeightDp;
+    return 31 * key + cfg.densityDpi;
+  }
+
+  private static void notifyListeners(int[] profile) {
+    for (Act1<int[]> listener : listeners) {
+      try {
+        listener.run(profile);
+      } catch (RuntimeException e) {
+        Log.log(Log.ERROR, Tag.TAG, "DeviceProfile listener failed", e);
+      }
+    }
+  }
+
+  public static boolean isTablet(int[] profile) { return profile[IDX_IS_TABLET] != 0; }
+  public static String locale(int[] profile) { return readString(profile, profile[IDX_LOCALE_OFFSET]); }
+  public static String countryCode(int[] profile) { return readString(profile, profile[IDX_COUNTRY_CODE_OFFSET]); }
+
+  private static int[] compute(Context context, int version) {
+    Configuration cfg = context.getResources().getConfiguration();
+    DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+    ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+
+    Locale locale = cfg.getLocales().size() > 0 ? cfg.getLocales().get(0) : Locale.getDefault();
+    String languageTag = locale.toLanguageTag();
+    String countryCode = CountryCodeResolver.cached(context);
+
+    int[] profile = new int[FIXED_SIZE + stringSize(languageTag) + stringSize(countryCode)];
+    int sizeClass = cfg.screenLayout & Configuration.SCREENLAYOUT_SIZE_MASK;
+    profile[IDX_VERSION] = version;
+    profile[IDX_SCREEN_SIZE_CLASS] = sizeClass;
+    profile[IDX_IS_TABLET] =
+      sizeClass == Configuration.SCREENLAYOUT_SIZE_XLARGE || sizeClass == Configuration.SCREENLAYOUT_SIZE_LARGE
+        ? 1 : 0;
+    profile[IDX_DENSITY_DPI] = metrics.densityDpi;
+    profile[IDX_DENSITY_MILLIS] = Math.round(metrics.density * 1000);
+    profile[IDX_WIDTH_PX] = metrics.widthPixels;
+    profile[IDX_HEIGHT_PX] = metrics.heightPixels;
+    profile[IDX_SMALLEST_WIDTH_DP] = cfg.smallestScreenWidthDp;
+    profile[IDX_ORIENTATION] = cfg.orientation;
+    if (activityManager != null) {
+      profile[IDX_MEMORY_CLASS_MB] = activityManager.getMemoryClass();
+      profile[IDX_LARGE_MEMORY_CLASS_MB] = activityManager.getLargeMemoryClass();
+      profile[IDX_IS_LOW_RAM] = activityManager.isLowRamDevice() ? 1 : 0;
+    }
+    profile[IDX_SDK_INT] = Build.VERSION.SDK_INT;
+
+    int offset = FIXED_SIZE;
+    profile[IDX_LOCALE_OFFSET] = offset;
+    offset = writeString(profile, offset, languageTag);
+    profile[IDX_COUNTRY_CODE_OFFSET] = offset;
+    writeString(profile, offset, countryCode);
+    return profile;
+  }
+
+  private static int stringSize(String s) { return 1 + (s == null ? 0 : s.length()); }
+
+  private static int writeString(int[] profile, int offset, String s) {
+    if (s == null) {
+      profile[offset] = -1;
+      return offset + 1;
+    }
+    profile[offset++] = s.length();
+    for (int idx = 0; idx < s.length(); idx++) profile[offset++] = s.charAt(idx);
+    return offset;
+  }
+
+  private static String readString(int[] profile, int offset) {
+    int length = profile[offset];
+    if (length < 0) return null;
+    char[] chars = new char[length];
+    for (int idx = 0; idx < length; idx++) chars[idx] = (char) profile[offset + 1 + idx];
+    return new String(chars);
+  }
+}
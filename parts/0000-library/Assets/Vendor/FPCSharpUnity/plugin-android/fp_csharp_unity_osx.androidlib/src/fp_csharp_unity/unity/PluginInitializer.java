@@ -0,0 +1,306 @@
+package fp_csharp_unity.unity;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Looper;
+import android.os.Trace;
+import android.view.Choreographer;
+import fp_csharp_unity.unity.fns.Act1;
+import fp_csharp_unity.unity.logging.Log;
+import fp_csharp_unity.unity.metrics.Metrics;
+import fp_csharp_unity.unity.referrer.InstallReferrerReceiver;
+import fp_csharp_unity.unity.video_player.VideoCache;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Initializes plugin subsystems lazily, in dependency order, and records how long each one took.
+ * <p>
+ * Components are registered with their dependencies and initialized on the first
+ * {@link #require(String)}. {@link #start(Activity)} initializes the critical ones right away and
+ * the rest on a background thread once the first frames are drawn, so they stay out of the
+ * startup critical path.
+ * <p>
+ * Dependency cycles are rejected by {@link #register}. Initialization holds no lock while it runs
+ * dependencies or {@code init}: a component is marked running under its lock, and other threads
+ * that require it meanwhile wait until it finishes. Without cycles that can not deadlock.
+ * <p>
+ * Every initialization runs in an {@link Trace} section named {@code FPCSharpUnity:<name>}, is
+ * recorded in the {@code plugin.init.<name>} histogram and shows up in {@link #startupReport()}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class PluginInitializer {
+  public static final String
+    LOGGING = "logging",
+    DEVICE_PROFILE = "device_profile",
+    REFERRER = "referrer",
+    VIDEO_CACHE = "video_cache";
+
+  public static final PluginInitializer shared = new PluginInitializer();
+
+  private static final int STATE_NEW = 0, STATE_RUNNING = 1, STATE_DONE = 2, STATE_FAILED = 3;
+  private static final String[] STATE_NAMES = { "new", "running", "done", "failed" };
+  // Frames to wait before deferred components start, the first one is usually the slowest.
+  private static final int DEFERRED_AFTER_FRAMES = 2;
+
+  private static final class Component {
+    final String name;
+    final boolean critical;
+    final String[] dependsOn;
+    final Act1<Context> init;
+
+    // Guarded by this, waiters are notified when the state leaves STATE_RUNNING.
+    int state = STATE_NEW;
+    Thread runningThread;
+    long startNanos, durationNanos;
+    String threadName;
+    boolean onMainThread;
+    Throwable failure;
+
+    Component(String name, boolean critical, String[] dependsOn, Act1<Context> init) {
+      this.name = name;
+      this.critical = critical;
+      this.dependsOn = dependsOn;
+      this.init = init;
+    }
+  }
+
+  // Guarded by this.
+  private final LinkedHashMap<String, Component> components = new LinkedHashMap<>();
+  // Components in the order they finished initializing. Guarded by this.
+  private final ArrayList<Component> finished = new ArrayList<>();
+  private volatile Context appContext;
+  private volatile long startedAtNanos;
+  private boolean started;
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "FPCSharpUnity-Init");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    }
+  });
+
+  /**
+   * @param critical whether {@link #start(Activity)} initializes the component right away instead
+   *                 of after the first frames.
+   * @param dependsOn components that are initialized before this one. They can be registered later.
+   * @param init called once with the application context.
+   * @throws IllegalArgumentException if the name is taken or the dependencies would form a cycle.
+   */
+  public synchronized void register(String name, boolean critical, String[] dependsOn, Act1<Context> init) {
+    if (components.containsKey(name)) throw new IllegalArgumentException("Component " + name + " is already registered");
+    components.put(name, new Component(name, critical, dependsOn == null ? new String[0] : dependsOn, init));
+    // Components registered before had no cycle, so a new one has to go through this component.
+    if (reaches(name, name, new HashSet<String>())) {
+      components.remove(name);
+      throw new IllegalArgumentException("Component " + name + " would be part of a dependency cycle");
+    }
+  }
+
+  /** Depth-first search for {@code target} among the dependencies of {@code from}. Guarded by this. */
+  private boolean reaches(String from, String target, HashSet<String> visited) {
+    Component component = components.get(from);
+    if (component == null) return false;
+    for (String dependency : component.dependsOn) {
+      if (dependency.equals(target)) return true;
+      if (visited.add(dependency) && reaches(dependency, target, visited)) return true;
+    }
+    return false;
+  }
+
+  /** Registers the components of this plugin. Idempotent. */
+  public synchronized void registerDefaults() {
+    if (components.containsKey(LOGGING)) return;
+    register(LOGGING, true, null, new Act1<Context>() {
+      @Override
+      public void run(Context context) {
+        // Loads Log and registers the logcat logger.
+        Log.isLoggable(Log.INFO, Tag.TAG);
+      }
+    });
+    register(DEVICE_PROFILE, false, new String[] { LOGGING }, new Act1<Context>() {
+      @Override
+      public void run(Context context) {
+        DeviceProfile.get(context);
+      }
+    });
+    register(REFERRER, false, new String[] { LOGGING }, new Act1<Context>() {
+      @Override
+      public void run(Context context) {
+        InstallReferrerReceiver.prewarm(context);
+      }
+    });
+    register(VIDEO_CACHE, false, new String[] { LOGGING }, new Act1<Context>() {
+      @Override
+      public void run(Context context) {
+        VideoCache.prewarm(context);
+      }
+    });
+  }
+
+  /**
+   * Initializes the critical components on the calling thread and schedules the others after the
+   * first frames. Call on the UI thread. Calling it again does nothing.
+   */
+  public void start(Activity activity) {
+    final ArrayList<Component> critical = new ArrayList<>(), deferred = new ArrayList<>();
+    synchronized (this) {
+      if (started) return;
+      started = true;
+      appContext = activity.getApplicationContext();
+      startedAtNanos = System.nanoTime();
+      for (Component component : components.values()) (component.critical ? critical : deferred).add(component);
+    }
+
+    for (Component component : critical) initialize(component);
+    if (deferred.isEmpty()) return;
+
+    Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+      private int frames;
+
+      @Override
+      public void doFrame(long frameTimeNanos) {
+        if (++frames < DEFERRED_AFTER_FRAMES) {
+          Choreographer.getInstance().postFrameCallback(this);
+          return;
+        }
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            for (Component component : deferred) initialize(component);
+            Log.log(Log.INFO, Tag.TAG, "Plugin startup:\n{}", startupReport());
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Initializes the component and its dependencies on the calling thread, unless that already
+   * happened. Waits if another thread is initializing it.
+   *
+   * @return whether the component initialized successfully.
+   */
+  public boolean require(String name) {
+    Component component;
+    synchronized (this) {
+      component = components.get(name);
+    }
+    if (component == null) throw new IllegalArgumentException("Unknown component " + name);
+    return initialize(component);
+  }
+
+  private boolean initialize(Component component) {
+    Context context;
+    synchronized (component) {
+      boolean interrupted = false;
+      while (component.state == STATE_RUNNING) {
+        if (component.runningThread == Thread.currentThread()) {
+          // register() rejects dependency cycles, so this is an init that requires its own dependent.
+          Log.log(Log.ERROR, Tag.TAG, "Plugin component {} was required while it initializes", component.name);
+          return false;
+        }
+        try {
+          component.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) Thread.currentThread().interrupt();
+      if (component.state == STATE_DONE) return true;
+      if (component.state == STATE_FAILED) return false;
+
+      context = appContext;
+      if (context == null)
+        throw new IllegalStateException("Component " + component.name + " required before start()");
+      component.state = STATE_RUNNING;
+      component.runningThread = Thread.currentThread();
+    }
+
+    boolean success = true;
+    Throwable failure = null;
+    for (String dependency : component.dependsOn) {
+      Component dependencyComponent;
+      synchronized (this) {
+        dependencyComponent = components.get(dependency);
+      }
+      if (dependencyComponent == null || !initialize(dependencyComponent)) {
+        success = false;
+        failure = new IllegalStateException("Dependency " + dependency + " is missing or failed");
+        break;
+      }
+    }
+
+    long startNanos = System.nanoTime();
+    if (success) {
+      Trace.beginSection("FPCSharpUnity:" + component.name);
+      try {
+        component.init.run(context);
+      } catch (RuntimeException e) {
+        success = false;
+        failure = e;
+      } finally {
+        Trace.endSection();
+      }
+    }
+    long durationNanos = System.nanoTime() - startNanos;
+
+    synchronized (component) {
+      component.startNanos = startNanos;
+      component.durationNanos = durationNanos;
+      component.threadName = Thread.currentThread().getName();
+      component.onMainThread = Looper.myLooper() == Looper.getMainLooper();
+      component.failure = failure;
+      component.state = success ? STATE_DONE : STATE_FAILED;
+      component.runningThread = null;
+      component.notifyAll();
+    }
+    if (success) Metrics.histogram("plugin.init." + component.name).record(durationNanos);
+    else Log.log(Log.ERROR, Tag.TAG, "Plugin component {} failed to initialize", component.name, failure);
+    synchronized (this) {
+      finished.add(component);
+    }
+    return success;
+  }
+
+  /**
+   * One line per component in the order they were initialized, then the ones that were not:
+   * {@code name state thread start_ms duration_us}, where start is relative to {@link #start(Activity)}
+   * and the thread is marked with {@code *} for the main thread.
+   */
+  public String startupReport() {
+    ArrayList<Component> ordered;
+    synchronized (this) {
+      ordered = new ArrayList<>(finished);
+      for (Component component : components.values()) if (!ordered.contains(component)) ordered.add(component);
+    }
+
+    long mainThreadNanos = 0, backgroundNanos = 0;
+    StringBuilder sb = new StringBuilder();
+    for (Component component : ordered) {
+      synchronized (component) {
+        boolean ran = component.state == STATE_DONE || component.state == STATE_FAILED;
+        sb.append(component.name).append(component.critical ? " (critical)" : "")
+          .append(' ').append(STATE_NAMES[component.state]);
+        if (ran) {
+          sb.append(' ').append(component.threadName).append(component.onMainThread ? "*" : "")
+            .append(' ').append((component.startNanos - startedAtNanos) / 1_000_000).append("ms")
+            .append(' ').append(component.durationNanos / 1000).append("us");
+          if (component.onMainThread) mainThreadNanos += component.durationNanos;
+          else backgroundNanos += component.durationNanos;
+        }
+        sb.append('\n');
+      }
+    }
+    sb.append("total: ").append(mainThreadNanos / 1000).append("us on the main thread, ")
+      .append(backgroundNanos / 1000).append("us in the background");
+    return sb.toString();
+  }
+}
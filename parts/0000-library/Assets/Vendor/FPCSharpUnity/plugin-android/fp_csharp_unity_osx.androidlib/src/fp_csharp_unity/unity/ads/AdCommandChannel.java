@@ -0,0 +1,214 @@
+package fp_csharp_unity.unity.ads;
+
+import fp_csharp_unity.unity.Tag;
+import fp_csharp_unity.unity.logging.Log;
+import fp_csharp_unity.unity.util.Utils;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Batches banner and interstitial calls from C# into one JNI call and one UI thread pass per frame.
+ * <p>
+ * C# registers its ads once, then writes commands into {@link #buffer()} (a direct buffer it can
+ * write through {@code GetDirectBufferAddress}) and hands them over with {@link #submit(int)}.
+ * Every command is two native order ints: an {@code OP_*} opcode and the target id returned by
+ * {@link #register(IStandardBanner)} or {@link #register(IStandardInterstitial)}.
+ * <p>
+ * {@link #submit(int)} copies the commands out, so the buffer can be reused right away. Commands
+ * submitted before the UI thread gets to them are applied together, in submission order.
+ * {@link BannerBase} commands are applied directly on the UI thread, without the per call post of
+ * the {@link IStandardBanner} methods.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class AdCommandChannel {
+    public static final int
+        OP_BANNER_LOAD = 1,
+        OP_BANNER_SHOW = 2,
+        OP_BANNER_HIDE = 3,
+        OP_BANNER_PAUSE = 4,
+        OP_BANNER_RESUME = 5,
+        OP_BANNER_DESTROY = 6,
+        OP_BANNER_PRELOAD = 7,
+        OP_INTERSTITIAL_LOAD = 8,
+        OP_INTERSTITIAL_SHOW = 9;
+
+    /** Size of one command in bytes. */
+    public static final int COMMAND_SIZE = 8;
+
+    private final ByteBuffer buffer;
+
+    // Registered banners and interstitials by id, copy-on-write so the UI pass reads without locking.
+    private volatile Object[] targets = new Object[0];
+    private final Object targetsLock = new Object();
+
+    // Commands waiting for the UI pass as [opcode, target id] pairs. Guarded by pendingLock.
+    private int[] pending, applying;
+    private int pendingCount;
+    // Set from the first submit until the UI pass finds nothing pending, including while it applies.
+    private boolean scheduled;
+    private final Object pendingLock = new Object();
+
+    private final Runnable applyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applyRunsOnUiThread();
+        }
+    };
+
+    /** @param maxCommands maximum number of commands in one {@link #submit(int)}. */
+    public AdCommandChannel(int maxCommands) {
+        if (maxCommands <= 0) throw new IllegalArgumentException("maxCommands must be positive, was " + maxCommands);
+        buffer = ByteBuffer.allocateDirect(maxCommands * COMMAND_SIZE).order(ByteOrder.nativeOrder());
+        pending = new int[maxCommands * 2];
+        applying = new int[maxCommands * 2];
+    }
+
+    /** Buffer C# writes the commands into. */
+    public ByteBuffer buffer() { return buffer; }
+
+    /** @return id to use as the command target. */
+    public int register(IStandardBanner banner) { return registerTarget(banner); }
+
+    /** @return id to use as the command target. */
+    public int register(IStandardInterstitial interstitial) { return registerTarget(interstitial); }
+
+    /** Frees the id. Commands for it that are still waiting are ignored. */
+    public void unregister(int id) {
+        synchronized (targetsLock) {
+            Object[] current = targets;
+            if (id < 0 || id >= current.length) return;
+            Object[] updated = current.clone();
+            updated[id] = null;
+            targets = updated;
+        }
+    }
+
+    private int registerTarget(Object target) {
+        synchronized (targetsLock) {
+            Object[] current = targets;
+            // Reuse a freed id if there is one.
+            for (int idx = 0; idx < current.length; idx++) {
+                if (current[idx] == null) {
+                    Object[] updated = current.clone();
+                    updated[idx] = target;
+                    targets = updated;
+                    return idx;
+                }
+            }
+            Object[] updated = new Object[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = target;
+            targets = updated;
+            return current.length;
+        }
+    }
+
+    /**
+     * Takes the first {@code byteCount} bytes of {@link #buffer()} as commands and schedules them
+     * to be applied on the UI thread.
+     */
+    public void submit(int byteCount) {
+        if (byteCount < 0 || byteCount > buffer.capacity() || byteCount % COMMAND_SIZE != 0)
+            throw new IllegalArgumentException(
+                "byteCount (" + byteCount + ") must be a multiple of " + COMMAND_SIZE +
+                " not larger than " + buffer.capacity()
+            );
+        if (byteCount == 0) return;
+
+        boolean schedule;
+        synchronized (pendingLock) {
+            int ints = byteCount / 4;
+            if (pendingCount + ints > pending.length) {
+                int[] grown = new int[Math.max(pending.length * 2, pendingCount + ints)];
+                System.arraycopy(pending, 0, grown, 0, pendingCount);
+                pending = grown;
+            }
+            for (int offset = 0; offset < byteCount; offset += 4) {
+                pending[pendingCount++] = buffer.getInt(offset);
+            }
+            schedule = !scheduled;
+            scheduled = true;
+        }
+        if (schedule) Utils.runOnUiSafe("AdCommandChannel apply", applyRunnable);
+    }
+
+    private void applyRunsOnUiThread() {
+        // A command can call into C#, which can submit again. That submit sees scheduled still set,
+        // so it only appends to the other array instead of applying inline over this one. Its
+        // commands are picked up by the next round of this loop.
+        while (true) {
+            int[] commands;
+            int count;
+            synchronized (pendingLock) {
+                if (pendingCount == 0) {
+                    scheduled = false;
+                    return;
+                }
+                commands = pending;
+                count = pendingCount;
+                pending = applying;
+                applying = commands;
+                pendingCount = 0;
+            }
+            applyAll(commands, count);
+        }
+    }
+
+    private void applyAll(int[] commands, int count) {
+        Object[] currentTargets = targets;
+        for (int idx = 0; idx < count; idx += 2) {
+            int opcode = commands[idx], id = commands[idx + 1];
+            Object target = id >= 0 && id < currentTargets.length ? currentTargets[id] : null;
+            if (target == null) {
+                Log.log(Log.WARN, Tag.TAG, "AdCommandChannel: no target with id {} for opcode {}", id, opcode);
+                continue;
+            }
+            try {
+                apply(opcode, target);
+            }
+            catch (Throwable e) {
+                Log.log(Log.ERROR, Tag.TAG, "AdCommandChannel: error applying opcode {} to {}", opcode, target, e);
+            }
+        }
+    }
+
+    private static void apply(int opcode, Object target) {
+        switch (opcode) {
+            case OP_INTERSTITIAL_LOAD:
+                ((IStandardInterstitial) target).load();
+                return;
+            case OP_INTERSTITIAL_SHOW:
+                ((IStandardInterstitial) target).show();
+                return;
+        }
+
+        if (target instanceof BannerBase) {
+            BannerBase<?> banner = (BannerBase<?>) target;
+            switch (opcode) {
+                case OP_BANNER_LOAD: banner.loadRunsOnUiThread(); return;
+                case OP_BANNER_SHOW: banner.setVisibilityRunsOnUiThread(true); return;
+                case OP_BANNER_HIDE: banner.setVisibilityRunsOnUiThread(false); return;
+                case OP_BANNER_PAUSE: banner.onPauseRunsOnUiThread(); return;
+                case OP_BANNER_RESUME: banner.onResumeRunsOnUiThread(); return;
+                case OP_BANNER_DESTROY: banner.destroyRunsOnUiThread(); return;
+                case OP_BANNER_PRELOAD: banner.preloadRunsOnUiThread(); return;
+            }
+        }
+        else {
+            IStandardBanner banner = (IStandardBanner) target;
+            switch (opcode) {
+                case OP_BANNER_LOAD: banner.load(); return;
+                case OP_BANNER_SHOW: banner.setVisibility(true); return;
+                case OP_BANNER_HIDE: banner.setVisibility(false); return;
+                case OP_BANNER_PAUSE: banner.onPause(); return;
+                case OP_BANNER_RESUME: banner.onResume(); return;
+                case OP_BANNER_DESTROY: banner.destroy(); return;
+                case OP_BANNER_PRELOAD:
+                    // Only BannerBase can preload, plain banners just load.
+                    banner.load();
+                    return;
+            }
+        }
+        throw new IllegalArgumentException("Unknown opcode: " + opcode);
+    }
+}
@@ -1,23 +1,30 @@
 package fp_csharp_unity.unity.ads;
 
 import android.app.Activity;
-import android.util.Log;
-import android.view.Gravity;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.FrameLayout;
-import android.widget.LinearLayout;
 import fp_csharp_unity.unity.fns.Fn1;
+import fp_csharp_unity.unity.logging.Log;
+import fp_csharp_unity.unity.metrics.LatencyHistogram;
+import fp_csharp_unity.unity.metrics.Metrics;
 import fp_csharp_unity.unity.util.Utils;
 
 @SuppressWarnings("unused")
 public abstract class BannerBase<Banner extends View> implements IStandardBanner {
+    private static final LatencyHistogram addToUiMetric = Metrics.histogram("banner.add_to_ui");
+
     protected abstract String TAG();
 
     protected final Activity activity;
 
     protected Banner banner;
 
+    // Placement layout the banner is in, set by addToUI.
+    private BannerContainer container;
+
+    // Coalescing key for Utils.runOnUiSafe, so only the latest pending visibility change runs.
+    private final Object visibilityKey = new Object();
+
     protected BannerBase(
         Activity activity,
         final boolean isTopBanner, final BannerMode.Mode mode,
@@ -42,78 +49,15 @@ public abstract class BannerBase<Banner extends View> implements IStandardBanner
     }
 
     protected void addToUI(BannerMode.Mode mode, boolean isTopBanner, boolean hideAfterCreation) {
-        if (mode instanceof BannerMode.PercentileSize) {
-            // Reason for these views in short - to be able to place, position, and scale
-            // banner sizes based on percentage of the screen taken
-            // https://inthecheesefactory.com/blog/know-percent-support-library/en
-            BannerMode.PercentileSize _mode = (BannerMode.PercentileSize) mode;
-
-            View spacerView = new View(activity);
-            LinearLayout heightPlacement = new LinearLayout(activity);
-            heightPlacement.setWeightSum(1);
-            heightPlacement.setOrientation(LinearLayout.VERTICAL);
-            float heightOffset = 1 - _mode.height;
-            if (!isTopBanner) {
-                heightPlacement.addView(spacerView, new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, 0, heightOffset));
-            }
-            heightPlacement.addView(banner, new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, 0, _mode.height));
-            if (isTopBanner) {
-                heightPlacement.addView(spacerView, new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, 0, heightOffset));
-            }
-
-            float widthOffset = (1 - _mode.width) / 2;
-            LinearLayout widthPlacement = new LinearLayout(activity);
-            widthPlacement.setWeightSum(1);
-            widthPlacement.setOrientation(LinearLayout.HORIZONTAL);
-            View leftView = new View(activity), rightView = new View(activity);
-            widthPlacement.addView(leftView, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.MATCH_PARENT, widthOffset));
-            widthPlacement.addView(heightPlacement, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.MATCH_PARENT, _mode.width));
-            widthPlacement.addView(rightView, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.MATCH_PARENT, widthOffset));
-
-            FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT);
-            activity.addContentView(widthPlacement, params);
-        } else {
-            int finalWidth, finalHeight;
-
-            if (mode instanceof BannerMode.WrapContent) {
-                finalWidth = FrameLayout.LayoutParams.MATCH_PARENT;
-                finalHeight = FrameLayout.LayoutParams.WRAP_CONTENT;
-            } else if (mode instanceof BannerMode.FixedSize) {
-                BannerMode.FixedSize _mode = (BannerMode.FixedSize) mode;
-                final float density = activity.getResources().getDisplayMetrics().density;
-                finalWidth = applyDensity(_mode.width, density);
-                finalHeight = applyDensity(_mode.height, density);
-            } else {
-                throw new RuntimeException("Unknown banner mode: " + mode);
-            }
+        final long startNanos = System.nanoTime();
+        container = BannerContainerCache.forActivity(activity).obtain(mode, isTopBanner);
+        Log.log(Log.DEBUG, TAG(), "Adding banner to frame [mode:{} top:{}]", mode, isTopBanner);
+        container.attach(banner);
 
-            int gravity = (isTopBanner ? Gravity.TOP : Gravity.BOTTOM) | Gravity.CENTER_HORIZONTAL;
-            final FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(
-                    finalWidth, finalHeight, gravity
-            );
-            Log.d(
-                    TAG(),
-                    "Adding banner to frame [width:" + finalWidth + " height:" + finalHeight + " gravity:" +
-                            gravity + "]"
-            );
-
-
-
-            activity.addContentView(banner, params);
-        }
-
-        Log.d(TAG(), "Banner added to UI.");
+        Log.log(Log.DEBUG, TAG(), "Banner added to UI.");
         if (hideAfterCreation) setVisibilityRunsOnUiThread(false);
-    }
-
-    private final int applyDensity(final int value, final float density) {
-        switch (value) {
-            case FrameLayout.LayoutParams.MATCH_PARENT:
-            case FrameLayout.LayoutParams.WRAP_CONTENT:
-                return value;
-            default:
-                return (int) (value * density);
-        }
+        else container.show(banner);
+        addToUiMetric.recordSince(startNanos);
     }
 
     @Override
@@ -128,17 +72,40 @@ public abstract class BannerBase<Banner extends View> implements IStandardBanner
 
     protected abstract void loadRunsOnUiThread();
 
+    /**
+     * Loads the banner while keeping it laid out but not drawn, so it can be swapped in with
+     * {@link #setVisibility(boolean)} without a blank frame while another banner is still shown.
+     */
+    @SuppressWarnings("unused")
+    public final void preload() {
+        Utils.runOnUiSafe("Banner preload", new Runnable() {
+            @Override
+            public void run() {
+                preloadRunsOnUiThread();
+            }
+        });
+    }
+
+    protected void preloadRunsOnUiThread() {
+        if (banner != null && container != null) container.preload(banner);
+        loadRunsOnUiThread();
+    }
+
     protected void setVisibilityRunsOnUiThread(boolean visible) {
         if (banner != null) {
-            banner.setVisibility(visible ? View.VISIBLE : View.GONE);
-            Log.d(TAG(), "Banner visible=" + visible);
+            if (container != null) {
+                if (visible) container.show(banner);
+                else container.hide(banner);
+            }
+            else banner.setVisibility(visible ? View.VISIBLE : View.GONE);
+            Log.log(Log.DEBUG, TAG(), "Banner visible={}", visible);
         }
-        else Log.d(TAG(), "Banner frame is null, can't set visibility");
+        else Log.log(Log.DEBUG, TAG(), "Banner frame is null, can't set visibility");
     }
 
     @SuppressWarnings("unused")
     public void setVisibility(final boolean visible) {
-        Utils.runOnUiSafe("Banner setVisibility", new Runnable() {
+        Utils.runOnUiSafe("Banner setVisibility", visibilityKey, new Runnable() {
             @Override
             public void run() {
                 setVisibilityRunsOnUiThread(visible);
@@ -161,7 +128,9 @@ public abstract class BannerBase<Banner extends View> implements IStandardBanner
         ViewGroup parent = (ViewGroup) banner.getParent();
         if (parent != null) {
             beforeDestroyRunsOnUiThread();
-            parent.removeView(banner);
+            // Only the ad view goes away, the container is kept for the next banner.
+            if (container != null) container.detach(banner);
+            else parent.removeView(banner);
             afterDestroyRunsOnUiThread();
         }
         banner = null;
@@ -170,8 +139,9 @@ public abstract class BannerBase<Banner extends View> implements IStandardBanner
     protected void beforeDestroyRunsOnUiThread() {}
     protected void afterDestroyRunsOnUiThread() {}
 
+    // Lifecycle calls are not coalesced: a pause followed by a resume must reach the ad SDK as both.
     @Override public void onPause() {
-        activity.runOnUiThread(new Runnable() {
+        Utils.runOnUiSafe("Banner onPause", new Runnable() {
             @Override
             public void run() {
                 onPauseRunsOnUiThread();
@@ -179,7 +149,7 @@ public abstract class BannerBase<Banner extends View> implements IStandardBanner
         });
     }
     @Override public void onResume() {
-        activity.runOnUiThread(new Runnable() {
+        Utils.runOnUiSafe("Banner onResume", new Runnable() {
             @Override
             public void run() {
                 onResumeRunsOnUiThread();
@@ -0,0 +1,93 @@
+package fp_csharp_unity.unity.ads;
+
+import android.app.Activity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import fp_csharp_unity.unity.logging.Log;
+
+/**
+ * Placement layout for banners of one ({@link BannerMode.Mode}, isTop) combination.
+ * <p>
+ * Created once per activity by {@link BannerContainerCache} and kept in the view hierarchy, so
+ * replacing a banner only adds and removes the ad view instead of rebuilding the placement layouts.
+ * <p>
+ * A preloaded banner can be swapped in without a blank frame by showing it and hiding the old one
+ * in the same UI thread pass.
+ * <p>
+ * Must only be used on the UI thread.
+ */
+final class BannerContainer {
+    private static final String TAG = "FPCSharpUnity-BannerContainer";
+
+    final BannerMode.Mode mode;
+    final boolean isTopBanner;
+
+    // Added to the activity content view, banner views are added to it.
+    private final PercentBannerFrame frame;
+
+    BannerContainer(Activity activity, BannerMode.Mode mode, boolean isTopBanner) {
+        this.mode = mode;
+        this.isTopBanner = isTopBanner;
+        frame = new PercentBannerFrame(activity, mode, isTopBanner);
+
+        Log.log(Log.DEBUG, TAG, "Creating banner container [mode:{} top:{}]", mode, isTopBanner);
+        frame.setVisibility(View.GONE);
+        activity.addContentView(frame, new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT
+        ));
+    }
+
+    /** Adds the banner to this container, hidden. */
+    void attach(View banner) {
+        ViewGroup parent = (ViewGroup) banner.getParent();
+        if (parent == frame) return;
+        if (parent != null) parent.removeView(banner);
+        banner.setVisibility(View.GONE);
+        frame.addView(banner);
+    }
+
+    /** Removes the banner view. The container itself stays in the hierarchy for the next banner. */
+    void detach(View banner) {
+        if (banner.getParent() == frame) frame.removeView(banner);
+        refreshFrameVisibility();
+    }
+
+    /** Shows the banner on top of the others. Other banners in the container keep their visibility. */
+    void show(View banner) {
+        banner.setVisibility(View.VISIBLE);
+        frame.bringChildToFront(banner);
+        refreshFrameVisibility();
+    }
+
+    void hide(View banner) {
+        banner.setVisibility(View.GONE);
+        refreshFrameVisibility();
+    }
+
+    /**
+     * Lays the banner out in its final place without drawing it, so it can load while another banner
+     * is shown and then be swapped in with {@link #show(View)}.
+     */
+    void preload(View banner) {
+        if (banner.getVisibility() != View.VISIBLE) banner.setVisibility(View.INVISIBLE);
+        refreshFrameVisibility();
+    }
+
+    void removeFromActivity() {
+        ViewGroup parent = (ViewGroup) frame.getParent();
+        if (parent != null) parent.removeView(frame);
+    }
+
+    // Skips measuring and laying out the frame while it has nothing to show.
+    private void refreshFrameVisibility() {
+        int visibility = View.GONE;
+        for (int idx = 0; idx < frame.getChildCount(); idx++) {
+            if (frame.getChildAt(idx).getVisibility() != View.GONE) {
+                visibility = View.VISIBLE;
+                break;
+            }
+        }
+        if (frame.getVisibility() != visibility) frame.setVisibility(visibility);
+    }
+}
@@ -0,0 +1,89 @@
+package fp_csharp_unity.unity.ads;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache of {@link BannerContainer}s keyed by ({@link BannerMode.Mode}, isTop) for the current activity.
+ * <p>
+ * Unity runs everything in a single activity, so only the cache of the last used activity is kept,
+ * until that activity is destroyed.
+ * <p>
+ * Must only be used on the UI thread.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class BannerContainerCache {
+    private static BannerContainerCache current;
+
+    private static final class Key {
+        final BannerMode.Mode mode;
+        final boolean isTopBanner;
+
+        Key(BannerMode.Mode mode, boolean isTopBanner) {
+            this.mode = mode;
+            this.isTopBanner = isTopBanner;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return isTopBanner == other.isTopBanner && mode.equals(other.mode);
+        }
+
+        @Override public int hashCode() { return 31 * mode.hashCode() + (isTopBanner ? 1 : 0); }
+    }
+
+    private final Activity activity;
+    private final Map<Key, BannerContainer> containers = new HashMap<>();
+
+    // Drops the static reference when the activity is destroyed, so it is not leaked across recreation.
+    private final Application.ActivityLifecycleCallbacks lifecycleCallbacks =
+        new Application.ActivityLifecycleCallbacks() {
+            @Override public void onActivityCreated(Activity a, Bundle savedInstanceState) {}
+            @Override public void onActivityStarted(Activity a) {}
+            @Override public void onActivityResumed(Activity a) {}
+            @Override public void onActivityPaused(Activity a) {}
+            @Override public void onActivityStopped(Activity a) {}
+            @Override public void onActivitySaveInstanceState(Activity a, Bundle outState) {}
+
+            @Override public void onActivityDestroyed(Activity a) {
+                if (a != activity) return;
+                a.getApplication().unregisterActivityLifecycleCallbacks(this);
+                containers.clear();
+                if (current == BannerContainerCache.this) current = null;
+            }
+        };
+
+    private BannerContainerCache(Activity activity) { this.activity = activity; }
+
+    public static BannerContainerCache forActivity(Activity activity) {
+        if (current == null || current.activity != activity) {
+            // Containers of the previous activity went away together with its views.
+            if (current != null) {
+                current.activity.getApplication().unregisterActivityLifecycleCallbacks(current.lifecycleCallbacks);
+            }
+            current = new BannerContainerCache(activity);
+            activity.getApplication().registerActivityLifecycleCallbacks(current.lifecycleCallbacks);
+        }
+        return current;
+    }
+
+    BannerContainer obtain(BannerMode.Mode mode, boolean isTopBanner) {
+        Key key = new Key(mode, isTopBanner);
+        BannerContainer container = containers.get(key);
+        if (container == null) {
+            container = new BannerContainer(activity, mode, isTopBanner);
+            containers.put(key, container);
+        }
+        return container;
+    }
+
+    /** Removes all cached containers from the activity. Banners still in them are removed as well. */
+    public void clear() {
+        for (BannerContainer container : containers.values()) container.removeFromActivity();
+        containers.clear();
+    }
+}
@@ -0,0 +1,218 @@
+package fp_csharp_unity.unity.ads;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.os.Bundle;
+import android.view.View;
+import fp_csharp_unity.unity.Tag;
+import fp_csharp_unity.unity.fns.Act1;
+import fp_csharp_unity.unity.logging.Log;
+import fp_csharp_unity.unity.metrics.Gauge;
+import fp_csharp_unity.unity.metrics.Metrics;
+import fp_csharp_unity.unity.util.Utils;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Manages the lifecycle of a set of {@link BannerBase}s in one activity.
+ * <ul>
+ *   <li>Forwards pause and resume of the activity to all managed banners in one UI thread pass.</li>
+ *   <li>On {@link ComponentCallbacks2#onTrimMemory(int)} destroys hidden and preloaded banners.
+ *   {@code TRIM_MEMORY_*} levels are not one scale: the {@code RUNNING_*} levels come while the app
+ *   is in the foreground and the levels from {@code UI_HIDDEN} up while it is in the background,
+ *   so each has its own thresholds. {@code UI_HIDDEN} comes every time the app is backgrounded and
+ *   evicts nothing unless a background threshold is set to it. Visible banners are never evicted.
+ *   Evicted banners stop being managed and are passed to the {@code onEvicted} callback, so they
+ *   can be recreated later.</li>
+ *   <li>Reports the number of resident banners and an estimate of the memory their views take.</li>
+ * </ul>
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class BannerManager {
+    private static final Gauge residentMetric = Metrics.gauge("banner.resident");
+    private static final Gauge viewBytesMetric = Metrics.gauge("banner.view_bytes");
+
+    private final Application application;
+    private final Activity activity;
+    private final Act1<BannerBase<?>> onEvicted;
+    private final CopyOnWriteArrayList<BannerBase<?>> banners = new CopyOnWriteArrayList<>();
+
+    private volatile int hiddenEvictionLevel = ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+    private volatile int preloadedEvictionLevel = ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+    private volatile int hiddenBackgroundEvictionLevel = ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+    private volatile int preloadedBackgroundEvictionLevel = ComponentCallbacks2.TRIM_MEMORY_MODERATE;
+
+    // Updated on the UI thread by refreshStatsRunsOnUiThread.
+    private volatile int residentCount;
+    private volatile long estimatedViewBytes, evictedCount;
+
+    private final Application.ActivityLifecycleCallbacks lifecycleCallbacks =
+        new Application.ActivityLifecycleCallbacks() {
+            @Override public void onActivityCreated(Activity a, Bundle savedInstanceState) {}
+            @Override public void onActivityStarted(Activity a) {}
+            @Override public void onActivityStopped(Activity a) {}
+            @Override public void onActivitySaveInstanceState(Activity a, Bundle outState) {}
+            @Override public void onActivityDestroyed(Activity a) {}
+
+            @Override public void onActivityResumed(Activity a) {
+                if (a != activity) return;
+                for (BannerBase<?> banner : banners) banner.onResumeRunsOnUiThread();
+                refreshStatsRunsOnUiThread();
+            }
+
+            @Override public void onActivityPaused(Activity a) {
+                if (a != activity) return;
+                for (BannerBase<?> banner : banners) banner.onPauseRunsOnUiThread();
+                refreshStatsRunsOnUiThread();
+            }
+        };
+
+    private final ComponentCallbacks2 componentCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(final int level) { trimMemory(level); }
+
+        @Override
+        public void onLowMemory() { trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE); }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {}
+    };
+
+    /**
+     * Starts listening to the lifecycle of {@code activity}. Call {@link #close()} when done.
+     *
+     * @param onEvicted called on the UI thread with every banner that was destroyed because of
+     *                  memory pressure. Can be null.
+     */
+    public BannerManager(Activity activity, Act1<BannerBase<?>> onEvicted) {
+        this.activity = activity;
+        this.application = activity.getApplication();
+        this.onEvicted = onEvicted;
+        application.registerActivityLifecycleCallbacks(lifecycleCallbacks);
+        application.registerComponentCallbacks(componentCallbacks);
+    }
+
+    public void close() {
+        application.unregisterActivityLifecycleCallbacks(lifecycleCallbacks);
+        application.unregisterComponentCallbacks(componentCallbacks);
+        banners.clear();
+        refreshStats();
+    }
+
+    /** Hidden banners are destroyed in the foreground at this {@code TRIM_MEMORY_RUNNING_*} level or higher. */
+    public void setHiddenEvictionLevel(int level) { hiddenEvictionLevel = level; }
+
+    /** Preloaded banners are destroyed in the foreground at this {@code TRIM_MEMORY_RUNNING_*} level or higher. */
+    public void setPreloadedEvictionLevel(int level) { preloadedEvictionLevel = level; }
+
+    /** Hidden banners are destroyed in the background at this level or higher, {@code UI_HIDDEN} or above. */
+    public void setHiddenBackgroundEvictionLevel(int level) { hiddenBackgroundEvictionLevel = level; }
+
+    /** Preloaded banners are destroyed in the background at this level or higher, {@code UI_HIDDEN} or above. */
+    public void setPreloadedBackgroundEvictionLevel(int level) { preloadedBackgroundEvictionLevel = level; }
+
+    public void add(BannerBase<?> banner) {
+        banners.addIfAbsent(banner);
+        refreshStats();
+    }
+
+    /** Stops managing the banner without destroying it. */
+    public void remove(BannerBase<?> banner) {
+        banners.remove(banner);
+        refreshStats();
+    }
+
+    /** Destroys all managed banners. */
+    public void destroyAll() {
+        Utils.runOnUiSafe("BannerManager destroyAll", new Runnable() {
+            @Override
+            public void run() {
+                for (BannerBase<?> banner : banners) banner.destroyRunsOnUiThread();
+                banners.clear();
+                refreshStatsRunsOnUiThread();
+            }
+        });
+    }
+
+    /** Number of managed banners that have a view. */
+    public int residentCount() { return residentCount; }
+
+    /** Estimated memory of the managed banner views, as 4 bytes per laid out pixel. */
+    public long estimatedViewBytes() { return estimatedViewBytes; }
+
+    /** Statistics as [resident banners, estimated view bytes, banners evicted so far]. */
+    public long[] stats() {
+        return new long[] { residentCount, estimatedViewBytes, evictedCount };
+    }
+
+    private boolean evictsHidden(int level) {
+        return level < ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+            ? level >= hiddenEvictionLevel : level >= hiddenBackgroundEvictionLevel;
+    }
+
+    private boolean evictsPreloaded(int level) {
+        return level < ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+            ? level >= preloadedEvictionLevel : level >= preloadedBackgroundEvictionLevel;
+    }
+
+    private void trimMemory(final int level) {
+        if (!evictsHidden(level) && !evictsPreloaded(level)) return;
+        Utils.runOnUiSafe("BannerManager trimMemory", new Runnable() {
+            @Override
+            public void run() {
+                trimMemoryRunsOnUiThread(level);
+            }
+        });
+    }
+
+    private void trimMemoryRunsOnUiThread(int level) {
+        boolean evictHidden = evictsHidden(level), evictPreloaded = evictsPreloaded(level);
+        for (BannerBase<?> banner : banners) {
+            View view = banner.banner;
+            if (view == null) continue;
+            int visibility = view.getVisibility();
+            boolean evict =
+                (visibility == View.GONE && evictHidden) || (visibility == View.INVISIBLE && evictPreloaded);
+            if (!evict) continue;
+
+            banner.destroyRunsOnUiThread();
+            banners.remove(banner);
+            evictedCount++;
+            Log.log(Log.INFO, Tag.TAG, "BannerManager: evicted {} at trim level {}", banner, level);
+            if (onEvicted != null) {
+                try {
+                    onEvicted.run(banner);
+                }
+                catch (RuntimeException e) {
+                    Log.log(Log.ERROR, Tag.TAG, "BannerManager: onEvicted failed", e);
+                }
+            }
+        }
+        refreshStatsRunsOnUiThread();
+    }
+
+    private void refreshStats() {
+        Utils.runOnUiSafe("BannerManager refreshStats", this, new Runnable() {
+            @Override
+            public void run() {
+                refreshStatsRunsOnUiThread();
+            }
+        });
+    }
+
+    private void refreshStatsRunsOnUiThread() {
+        int resident = 0;
+        long bytes = 0;
+        for (BannerBase<?> banner : banners) {
+            View view = banner.banner;
+            if (view == null) continue;
+            resident++;
+            bytes += 4L * view.getWidth() * view.getHeight();
+        }
+        residentCount = resident;
+        estimatedViewBytes = bytes;
+        residentMetric.set(resident);
+        viewBytesMetric.set(bytes);
+    }
+}
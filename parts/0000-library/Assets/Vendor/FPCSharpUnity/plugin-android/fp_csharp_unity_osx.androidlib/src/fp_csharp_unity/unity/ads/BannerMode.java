@@ -10,6 +10,17 @@ public class BannerMode {
             this.width = width;
             this.height = height;
         }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FixedSize)) return false;
+            FixedSize other = (FixedSize) o;
+            return width == other.width && height == other.height;
+        }
+
+        @Override public int hashCode() { return 31 * width + height; }
+
+        @Override public String toString() { return "FixedSize[" + width + "x" + height + "]"; }
     }
 
     public static class PercentileSize implements Mode {
@@ -19,10 +30,23 @@ public class BannerMode {
             this.width = width;
             this.height = height;
         }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PercentileSize)) return false;
+            PercentileSize other = (PercentileSize) o;
+            return Float.compare(width, other.width) == 0 && Float.compare(height, other.height) == 0;
+        }
+
+        @Override public int hashCode() { return 31 * Float.floatToIntBits(width) + Float.floatToIntBits(height); }
+
+        @Override public String toString() { return "PercentileSize[" + width + "x" + height + "]"; }
     }
 
     public static class WrapContent implements Mode {
         public final static WrapContent instance = new WrapContent();
         private WrapContent() {}
+
+        @Override public String toString() { return "WrapContent"; }
     }
 }
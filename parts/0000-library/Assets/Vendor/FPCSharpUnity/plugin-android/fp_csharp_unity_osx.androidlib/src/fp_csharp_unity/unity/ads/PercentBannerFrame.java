@@ -0,0 +1,112 @@
+package fp_csharp_unity.unity.ads;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Full screen container that places its children as banners of a {@link BannerMode.Mode}:
+ * horizontally centered, at the top or the bottom of the frame.
+ * <ul>
+ *   <li>{@link BannerMode.PercentileSize} - percentage of the frame width and height.</li>
+ *   <li>{@link BannerMode.FixedSize} - size in dp, {@code MATCH_PARENT} and {@code WRAP_CONTENT} are allowed.</li>
+ *   <li>{@link BannerMode.WrapContent} - full width, height wraps the content.</li>
+ * </ul>
+ * Each child is measured and laid out once, unlike nested weighted LinearLayouts, which
+ * measure their children twice, and no spacer views are needed.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class PercentBannerFrame extends ViewGroup {
+    public final BannerMode.Mode mode;
+    public final boolean isTopBanner;
+    private final int fixedWidth, fixedHeight;
+
+    public PercentBannerFrame(Context context, BannerMode.Mode mode, boolean isTopBanner) {
+        super(context);
+        if (mode instanceof BannerMode.FixedSize) {
+            BannerMode.FixedSize _mode = (BannerMode.FixedSize) mode;
+            final float density = context.getResources().getDisplayMetrics().density;
+            fixedWidth = applyDensity(_mode.width, density);
+            fixedHeight = applyDensity(_mode.height, density);
+        }
+        else if (mode instanceof BannerMode.PercentileSize || mode instanceof BannerMode.WrapContent) {
+            fixedWidth = fixedHeight = 0;
+        }
+        else {
+            throw new RuntimeException("Unknown banner mode: " + mode);
+        }
+        this.mode = mode;
+        this.isTopBanner = isTopBanner;
+    }
+
+    private static int applyDensity(final int value, final float density) {
+        switch (value) {
+            case LayoutParams.MATCH_PARENT:
+            case LayoutParams.WRAP_CONTENT:
+                return value;
+            default:
+                return (int) (value * density);
+        }
+    }
+
+    private static int childSpec(int size, int available) {
+        switch (size) {
+            case LayoutParams.MATCH_PARENT:
+                return MeasureSpec.makeMeasureSpec(available, MeasureSpec.EXACTLY);
+            case LayoutParams.WRAP_CONTENT:
+                return MeasureSpec.makeMeasureSpec(available, MeasureSpec.AT_MOST);
+            default:
+                return MeasureSpec.makeMeasureSpec(size, MeasureSpec.EXACTLY);
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = getDefaultSize(0, widthMeasureSpec), height = getDefaultSize(0, heightMeasureSpec);
+        setMeasuredDimension(width, height);
+
+        int childWidthSpec, childHeightSpec;
+        if (mode instanceof BannerMode.PercentileSize) {
+            BannerMode.PercentileSize _mode = (BannerMode.PercentileSize) mode;
+            childWidthSpec = MeasureSpec.makeMeasureSpec(Math.round(width * _mode.width), MeasureSpec.EXACTLY);
+            childHeightSpec = MeasureSpec.makeMeasureSpec(Math.round(height * _mode.height), MeasureSpec.EXACTLY);
+        }
+        else if (mode instanceof BannerMode.FixedSize) {
+            childWidthSpec = childSpec(fixedWidth, width);
+            childHeightSpec = childSpec(fixedHeight, height);
+        }
+        else {
+            childWidthSpec = MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY);
+            childHeightSpec = MeasureSpec.makeMeasureSpec(height, MeasureSpec.AT_MOST);
+        }
+
+        for (int idx = 0; idx < getChildCount(); idx++) {
+            View child = getChildAt(idx);
+            if (child.getVisibility() != GONE) child.measure(childWidthSpec, childHeightSpec);
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        int width = r - l, height = b - t;
+        for (int idx = 0; idx < getChildCount(); idx++) {
+            View child = getChildAt(idx);
+            if (child.getVisibility() == GONE) continue;
+            int childWidth = child.getMeasuredWidth(), childHeight = child.getMeasuredHeight();
+            int left = (width - childWidth) / 2;
+            int top = isTopBanner ? 0 : height - childHeight;
+            child.layout(left, top, left + childWidth, top + childHeight);
+        }
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        // Children sizes come from the banner mode, layout params are ignored.
+        return new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT);
+    }
+
+    @Override
+    public boolean shouldDelayChildPressedState() {
+        return false;
+    }
+}
@@ -0,0 +1,203 @@
+package fp_csharp_unity.unity.ads;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import fp_csharp_unity.unity.Tag;
+import fp_csharp_unity.unity.fns.Act1;
+import fp_csharp_unity.unity.logging.Log;
+
+/**
+ * Keeps up to {@code warmCount} of the wrapped interstitials loaded and reports readiness changes
+ * through a callback, so C# does not have to call {@link #isReady()} over JNI every frame.
+ * <p>
+ * {@link IStandardInterstitial} has no load callbacks, so the cache polls the wrapped ads on the UI
+ * thread every {@code pollIntervalMillis} instead. Ads that stay ready longer than {@code ttlMillis}
+ * or keep loading longer than {@code loadTimeoutMillis} are loaded again. After {@link #show()}
+ * another ad starts loading right away.
+ * <p>
+ * The shown ad is not loaded again while it is on screen. Call {@link #onDismissed()} when it is
+ * closed to make it available for loading; it is also released if it reports being ready again.
+ * <p>
+ * Wrapped ads are only touched on the UI thread.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class PreloadingInterstitialCache implements IStandardInterstitial {
+    private static final class Slot {
+        final IStandardInterstitial ad;
+        boolean loading, ready, showing;
+        // SystemClock.elapsedRealtime() when the current state started.
+        long stateSince;
+
+        Slot(IStandardInterstitial ad) { this.ad = ad; }
+    }
+
+    public final int warmCount;
+    public final long ttlMillis, loadTimeoutMillis, pollIntervalMillis;
+
+    private final Slot[] slots;
+    private final Act1<Boolean> onReadinessChanged;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable pollRunnable = new Runnable() {
+        @Override
+        public void run() {
+            poll();
+            if (running) handler.postDelayed(this, pollIntervalMillis);
+        }
+    };
+    private final Runnable showRunnable = new Runnable() {
+        @Override
+        public void run() {
+            showRunsOnUiThread();
+        }
+    };
+
+    private volatile boolean running, ready;
+    private volatile int readyCount;
+
+    /**
+     * @param onReadinessChanged called on the UI thread with the new {@link #isReady()} value. Can be null.
+     */
+    public PreloadingInterstitialCache(
+        IStandardInterstitial[] ads, int warmCount, long ttlMillis, long loadTimeoutMillis,
+        long pollIntervalMillis, Act1<Boolean> onReadinessChanged
+    ) {
+        if (ads.length == 0) throw new IllegalArgumentException("at least one interstitial is needed");
+        if (pollIntervalMillis <= 0)
+            throw new IllegalArgumentException("pollIntervalMillis must be positive, was " + pollIntervalMillis);
+        slots = new Slot[ads.length];
+        for (int idx = 0; idx < ads.length; idx++) slots[idx] = new Slot(ads[idx]);
+        this.warmCount = Math.max(1, Math.min(warmCount, ads.length));
+        this.ttlMillis = ttlMillis;
+        this.loadTimeoutMillis = loadTimeoutMillis;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.onReadinessChanged = onReadinessChanged;
+    }
+
+    /** Starts keeping ads warm. Calling it again does nothing until {@link #stop()}. */
+    @Override
+    public void load() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (running) return;
+                running = true;
+                pollRunnable.run();
+            }
+        });
+    }
+
+    /** Stops loading new ads. Ads that are already loaded stay available to {@link #show()}. */
+    public void stop() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                running = false;
+                handler.removeCallbacks(pollRunnable);
+            }
+        });
+    }
+
+    /** Cached result of the last poll, does not call the wrapped ads. */
+    @Override
+    public boolean isReady() { return ready; }
+
+    public int readyCount() { return readyCount; }
+
+    /** Shows the ad that has been ready for the longest time. */
+    @Override
+    public void show() {
+        handler.post(showRunnable);
+    }
+
+    /** Call when the shown interstitial is closed, so it can be loaded again. */
+    public void onDismissed() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Slot slot : slots) slot.showing = false;
+                poll();
+            }
+        });
+    }
+
+    private void showRunsOnUiThread() {
+        poll();
+        Slot best = null;
+        for (Slot slot : slots) {
+            if (slot.ready && (best == null || slot.stateSince < best.stateSince)) best = slot;
+        }
+        if (best == null) {
+            Log.log(Log.WARN, Tag.TAG, "PreloadingInterstitialCache: show() called, but no interstitial is ready");
+            return;
+        }
+
+        best.ready = false;
+        best.loading = false;
+        best.showing = true;
+        best.stateSince = SystemClock.elapsedRealtime();
+        best.ad.show();
+        // Refill the cache from the other slots.
+        poll();
+    }
+
+    private void poll() {
+        long now = SystemClock.elapsedRealtime();
+        int active = 0, currentReadyCount = 0;
+        for (Slot slot : slots) {
+            if (slot.showing) {
+                // Ready again means the SDK reloaded it after it was closed.
+                if (!slot.ad.isReady()) continue;
+                slot.showing = false;
+                slot.ready = true;
+                slot.stateSince = now;
+            }
+            else if (slot.loading) {
+                if (slot.ad.isReady()) {
+                    slot.loading = false;
+                    slot.ready = true;
+                    slot.stateSince = now;
+                }
+                else if (now - slot.stateSince > loadTimeoutMillis) {
+                    startLoading(slot, now);
+                }
+            }
+            else if (slot.ready) {
+                if (now - slot.stateSince > ttlMillis) {
+                    slot.ready = false;
+                    startLoading(slot, now);
+                }
+                else if (!slot.ad.isReady()) {
+                    // Shown or invalidated behind our back.
+                    slot.ready = false;
+                }
+            }
+
+            if (slot.ready) currentReadyCount++;
+            if (slot.ready || slot.loading) active++;
+        }
+
+        if (running) {
+            for (int idx = 0; idx < slots.length && active < warmCount; idx++) {
+                Slot slot = slots[idx];
+                if (!slot.ready && !slot.loading && !slot.showing) {
+                    startLoading(slot, now);
+                    active++;
+                }
+            }
+        }
+
+        readyCount = currentReadyCount;
+        boolean currentReady = currentReadyCount != 0;
+        if (currentReady != ready) {
+            ready = currentReady;
+            if (onReadinessChanged != null) onReadinessChanged.run(currentReady);
+        }
+    }
+
+    private static void startLoading(Slot slot, long now) {
+        slot.loading = true;
+        slot.stateSince = now;
+        slot.ad.load();
+    }
+}
@@ -0,0 +1,273 @@
+package fp_csharp_unity.unity.location;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.Address;
+import android.location.Geocoder;
+import android.location.Location;
+import android.location.LocationManager;
+import fp_csharp_unity.unity.Tag;
+import fp_csharp_unity.unity.fns.Act1;
+import fp_csharp_unity.unity.logging.Log;
+import fp_csharp_unity.unity.metrics.Counter;
+import fp_csharp_unity.unity.metrics.LatencyHistogram;
+import fp_csharp_unity.unity.metrics.Metrics;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the country code of the last known location without blocking the caller.
+ * <p>
+ * Results are persisted in {@link SharedPreferences} per coarse lat/lon grid cell and reused until
+ * they are older than {@link #setTtlMillis(long)}. Every write drops expired cells and keeps at most
+ * {@link #MAX_CELLS} of them, as the whole preferences file is loaded on every start. Cache misses are geocoded on a small bounded
+ * executor, and concurrent requests for the same cell share one geocoder call.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class CountryCodeResolver {
+  static final String PREFS_NAME = "FPCSharpUnity_CountryCodeResolver";
+  static final String PREF_LAST = "last";
+  static final String CELL_PREFIX = "cell:";
+  /** Cells kept in the cache, the least recently resolved ones are dropped first. */
+  public static final int MAX_CELLS = 64;
+
+  private static final LatencyHistogram geocodeMetric = Metrics.histogram("location.geocode");
+  private static final Counter
+    hitMetric = Metrics.counter("location.cache.hit"),
+    missMetric = Metrics.counter("location.cache.miss");
+
+  private static volatile long ttlMillis = TimeUnit.DAYS.toMillis(7);
+  private static volatile double cellSizeDegrees = 0.5;
+
+  // Keys of cells that are being geocoded, with callbacks waiting for them. Guarded by itself.
+  private static final HashMap<String, List<Act1<String>>> inFlight = new HashMap<>();
+
+  private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+    1, 1, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(8),
+    new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "FPCSharpUnity-CountryCode");
+        thread.setDaemon(true);
+        return thread;
+      }
+    }
+  );
+  static { executor.allowCoreThreadTimeOut(true); }
+
+  public static void setTtlMillis(long ttlMillis) { CountryCodeResolver.ttlMillis = ttlMillis; }
+  public static void setCellSizeDegrees(double degrees) { cellSizeDegrees = degrees; }
+
+  /**
+   * Returns the cached country code of the last known location, or of the last resolved location
+   * when the current one is unknown. Never geocodes.
+   *
+   * @return null if there is no fresh cached value.
+   */
+  public static String cached(Context context) {
+    SharedPreferences prefs = prefs(context);
+    Location location;
+    try {
+      location = lastKnownLocation(context);
+    } catch (SecurityException e) {
+      location = null;
+    }
+    return readFresh(prefs, location == null ? PREF_LAST : cellKey(location));
+  }
+
+  /**
+   * Calls {@code onResolved} with the country code, or null if it can't be determined.
+   * <p>
+   * On a cache hit the callback runs immediately on the calling thread, otherwise it runs on a
+   * background thread once geocoding finishes.
+   */
+  public static void resolve(Context context, final Act1<String> onResolved) {
+    final Context appContext = context.getApplicationContext();
+    final Location location;
+    try {
+      location = lastKnownLocation(appContext);
+    } catch (SecurityException e) {
+      Log.log(Log.WARN, Tag.TAG, "No permission to read the last known location", e);
+      onResolved.run(null);
+      return;
+    }
+    if (location == null || !Geocoder.isPresent()) {
+      onResolved.run(null);
+      return;
+    }
+
+    final String key = cellKey(location);
+    String cachedCode = readFresh(prefs(appContext), key);
+    if (cachedCode != null) {
+      hitMetric.increment();
+      onResolved.run(cachedCode);
+      return;
+    }
+    missMetric.increment();
+
+    synchronized (inFlight) {
+      List<Act1<String>> waiting = inFlight.get(key);
+      if (waiting != null) {
+        waiting.add(onResolved);
+        return;
+      }
+      waiting = new ArrayList<>(2);
+      waiting.add(onResolved);
+      inFlight.put(key, waiting);
+    }
+
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          String code = null;
+          try {
+            code = geocode(appContext, location, key);
+          } catch (IOException | RuntimeException e) {
+            Log.log(Log.WARN, Tag.TAG, "Country code geocoding failed", e);
+          }
+          complete(key, code);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      complete(key, null);
+    }
+  }
+
+  /**
+   * Blocking version of {@link #resolve}, still served from the cache when possible.
+   *
+   * @throws SecurityException if the app has no location permission.
+   */
+  public static String resolveBlocking(Context context) throws IOException {
+    Context appContext = context.getApplicationContext();
+    Location location = lastKnownLocation(appContext);
+    if (location == null || !Geocoder.isPresent()) return null;
+
+    String key = cellKey(location);
+    String cachedCode = readFresh(prefs(appContext), key);
+    if (cachedCode != null) {
+      hitMetric.increment();
+      return cachedCode;
+    }
+    missMetric.increment();
+    return geocode(appContext, location, key);
+  }
+
+  private static void complete(String key, String code) {
+    List<Act1<String>> waiting;
+    synchronized (inFlight) {
+      waiting = inFlight.remove(key);
+    }
+    if (waiting == null) return;
+    for (Act1<String> callback : waiting) {
+      try {
+        callback.run(code);
+      } catch (RuntimeException e) {
+        Log.log(Log.ERROR, Tag.TAG, "Country code callback failed", e);
+      }
+    }
+  }
+
+  private static String geocode(Context context, Location location, String key) throws IOException {
+    Geocoder gcd = new Geocoder(context, Locale.getDefault());
+    long startNanos = System.nanoTime();
+    List<Address> addresses;
+    try {
+      addresses = gcd.getFromLocation(location.getLatitude(), location.getLongitude(), 1);
+    } finally {
+      geocodeMetric.recordSince(startNanos);
+    }
+    if (addresses == null || addresses.isEmpty()) return null;
+
+    String code = addresses.get(0).getCountryCode();
+    if (code != null) {
+      String value = System.currentTimeMillis() + "|" + code;
+      SharedPreferences prefs = prefs(context);
+      SharedPreferences.Editor editor = prefs.edit().putString(key, value).putString(PREF_LAST, value);
+      pruneCells(prefs, editor, key);
+      editor.apply();
+    }
+    return code;
+  }
+
+  /** @throws SecurityException if the app has no location permission. */
+  private static Location lastKnownLocation(Context context) {
+    LocationManager locationManager =
+      (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+    if (locationManager == null) return null;
+    return locationManager.getLastKnownLocation(LocationManager.NETWORK_PROVIDER);
+  }
+
+  static String cellKey(Location location) {
+    double cellSize = cellSizeDegrees;
+    long lat = (long) Math.floor(location.getLatitude() / cellSize);
+    long lon = (long) Math.floor(location.getLongitude() / cellSize);
+    return CELL_PREFIX + cellSize + ":" + lat + ":" + lon;
+  }
+
+  /**
+   * Removes expired and unreadable cells and, if more than {@link #MAX_CELLS} would be left with
+   * {@code writtenKey}, the oldest ones.
+   */
+  private static void pruneCells(SharedPreferences prefs, SharedPreferences.Editor editor, String writtenKey) {
+    long now = System.currentTimeMillis();
+    ArrayList<String> keys = new ArrayList<>();
+    final HashMap<String, Long> storedAts = new HashMap<>();
+    for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+      String key = entry.getKey();
+      if (!key.startsWith(CELL_PREFIX) || key.equals(writtenKey)) continue;
+      Object value = entry.getValue();
+      long storedAt = value instanceof String ? storedAt((String) value) : -1;
+      if (storedAt == -1 || now - storedAt > ttlMillis) editor.remove(key);
+      else {
+        keys.add(key);
+        storedAts.put(key, storedAt);
+      }
+    }
+
+    int excess = keys.size() + 1 - MAX_CELLS;
+    if (excess <= 0) return;
+    Collections.sort(keys, new Comparator<String>() {
+      @Override
+      public int compare(String a, String b) {
+        return Long.compare(storedAts.get(a), storedAts.get(b));
+      }
+    });
+    for (int idx = 0; idx < excess; idx++) editor.remove(keys.get(idx));
+  }
+
+  /** @return when {@code value} was stored, or -1 if it is malformed. */
+  private static long storedAt(String value) {
+    int separator = value.indexOf('|');
+    if (separator == -1) return -1;
+    try {
+      return Long.parseLong(value.substring(0, separator));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static String readFresh(SharedPreferences prefs, String key) {
+    String value = prefs.getString(key, null);
+    if (value == null) return null;
+    long storedAt = storedAt(value);
+    if (storedAt == -1 || System.currentTimeMillis() - storedAt > ttlMillis) return null;
+    return value.substring(value.indexOf('|') + 1);
+  }
+
+  private static SharedPreferences prefs(Context context) {
+    return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+  }
+}
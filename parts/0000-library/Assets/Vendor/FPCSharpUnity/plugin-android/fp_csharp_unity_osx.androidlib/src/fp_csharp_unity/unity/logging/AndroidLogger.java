@@ -7,6 +7,12 @@ import android.util.Log;
  */
 
 public class AndroidLogger implements ILogger {
+  private volatile int minPriority;
+
+  public AndroidLogger() { this(Log.VERBOSE); }
+
+  public AndroidLogger(int minPriority) { this.minPriority = minPriority; }
+
   @Override
   public void log(int priority, String tag, String message) {
     Log.println(priority, tag, message);
@@ -16,4 +22,13 @@ public class AndroidLogger implements ILogger {
   public void log(int priority, String tag, String message, Throwable throwable) {
     Log.println(priority, tag, message + "\n" + Log.getStackTraceString(throwable));
   }
+
+  @Override public int minPriority() { return minPriority; }
+
+  /** Changes the minimum priority and refreshes the cached filters of the logger registry. */
+  @SuppressWarnings("unused")
+  public void setMinPriority(int minPriority) {
+    this.minPriority = minPriority;
+    fp_csharp_unity.unity.logging.Log.registry.refreshFilters();
+  }
 }
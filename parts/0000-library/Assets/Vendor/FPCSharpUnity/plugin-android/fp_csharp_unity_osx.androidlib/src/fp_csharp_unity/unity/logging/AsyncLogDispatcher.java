@@ -0,0 +1,175 @@
+package fp_csharp_unity.unity.logging;
+
+import fp_csharp_unity.unity.Tag;
+import fp_csharp_unity.unity.util.BoundedMpscSequencer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves {@link ILogger} calls off the calling thread.
+ * <p>
+ * Callers copy their log call into a preallocated record of a bounded lock-free ring buffer and
+ * a single background thread drains the records in batches to {@link Log#dispatch}.
+ */
+@SuppressWarnings("WeakerAccess")
+public class AsyncLogDispatcher {
+  public enum OverflowPolicy {
+    /** Drop the record and count it in {@link #droppedCount()}. */
+    DROP,
+    /** Wait until the background thread frees a slot. */
+    BLOCK
+  }
+
+  private static final class Record {
+    int priority;
+    String tag, message;
+    Throwable throwable;
+  }
+
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  public final int batchSize;
+  public final OverflowPolicy overflowPolicy;
+
+  private final BoundedMpscSequencer sequencer;
+  private final Record[] records;
+  private final Thread thread;
+  private final AtomicLong enqueued = new AtomicLong(), dropped = new AtomicLong(), flushed = new AtomicLong();
+  private volatile boolean running = true, consumerParked;
+  // Serializes draining between the background thread and late producers after a shut down.
+  private final Object drainLock = new Object();
+
+  public AsyncLogDispatcher(int capacity, int batchSize, OverflowPolicy overflowPolicy) {
+    if (batchSize < 1) throw new IllegalArgumentException("batchSize must be positive, was " + batchSize);
+    this.batchSize = batchSize;
+    this.overflowPolicy = overflowPolicy;
+    sequencer = new BoundedMpscSequencer(capacity);
+    records = new Record[sequencer.capacity];
+    for (int idx = 0; idx < records.length; idx++) records[idx] = new Record();
+
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        drainLoop();
+      }
+    }, "FPCSharpUnity-AsyncLog");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public int capacity() { return records.length; }
+  public int queuedCount() { return sequencer.size(); }
+  public long enqueuedCount() { return enqueued.get(); }
+  public long droppedCount() { return dropped.get(); }
+  public long flushedCount() { return flushed.get(); }
+
+  /**
+   * @return false if the caller should log synchronously, because this dispatcher is shut down or
+   * the caller is the background thread itself (a logger that logs), which could otherwise wait
+   * for itself on a full ring. Records dropped because of {@link OverflowPolicy#DROP} count as handled.
+   */
+  public boolean enqueue(int priority, String tag, String message, Throwable throwable) {
+    if (!running || Thread.currentThread() == thread) return false;
+    long position = sequencer.tryClaim();
+    while (position == -1) {
+      if (!running) return false;
+      if (overflowPolicy == OverflowPolicy.DROP) {
+        dropped.incrementAndGet();
+        return true;
+      }
+      LockSupport.unpark(thread);
+      LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+      position = sequencer.tryClaim();
+    }
+
+    Record record = records[sequencer.index(position)];
+    record.priority = priority;
+    record.tag = tag;
+    record.message = message;
+    record.throwable = throwable;
+    sequencer.publish(position);
+    enqueued.incrementAndGet();
+
+    // Shut down after the check above, the final drain may have already missed this record.
+    if (!running) {
+      drainBatch(Integer.MAX_VALUE);
+      return true;
+    }
+
+    if (consumerParked) LockSupport.unpark(thread);
+    return true;
+  }
+
+  /** Waits until everything enqueued so far is handed to loggers or the timeout passes. */
+  public boolean flush(long timeoutMillis) {
+    long target = enqueued.get();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    while (flushed.get() < target) {
+      if (!thread.isAlive()) return false;
+      if (System.nanoTime() - deadline >= 0) return false;
+      LockSupport.unpark(thread);
+      LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+    }
+    return true;
+  }
+
+  /**
+   * Stops the background thread after it drains the queue. Records enqueued during the shut down
+   * are logged on the calling thread.
+   */
+  public void shutdown(long timeoutMillis) {
+    running = false;
+    LockSupport.unpark(thread);
+    try {
+      thread.join(timeoutMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    drainBatch(Integer.MAX_VALUE);
+  }
+
+  private void drainLoop() {
+    while (running) {
+      if (drainBatch(batchSize) == 0) {
+        consumerParked = true;
+        // Re-check after publishing the flag, so a producer that missed it can't leave us sleeping.
+        if (sequencer.tryPeek() == -1 && running) LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        consumerParked = false;
+      }
+    }
+    drainBatch(Integer.MAX_VALUE);
+  }
+
+  private int drainBatch(int maxRecords) {
+    synchronized (drainLock) {
+      return drainBatchLocked(maxRecords);
+    }
+  }
+
+  private int drainBatchLocked(int maxRecords) {
+    int count = 0;
+    long position;
+    while (count < maxRecords && (position = sequencer.tryPeek()) != -1) {
+      Record record = records[sequencer.index(position)];
+      int priority = record.priority;
+      String tag = record.tag, message = record.message;
+      Throwable throwable = record.throwable;
+      record.tag = null;
+      record.message = null;
+      record.throwable = null;
+      sequencer.release(position);
+
+      try {
+        Log.dispatch(priority, tag, message, throwable);
+      } catch (RuntimeException e) {
+        // Do not let a broken logger kill the background thread.
+        android.util.Log.e(Tag.TAG, "Logger failed while dispatching an async log record", e);
+      }
+      count++;
+    }
+    if (count != 0) flushed.addAndGet(count);
+    return count;
+  }
+}
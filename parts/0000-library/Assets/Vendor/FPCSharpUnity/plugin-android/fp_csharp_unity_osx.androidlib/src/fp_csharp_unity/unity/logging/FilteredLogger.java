@@ -0,0 +1,39 @@
+package fp_csharp_unity.unity.logging;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Restricts another {@link ILogger} to a minimum priority and, optionally, a set of tags.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class FilteredLogger implements ILogger {
+  public final ILogger underlying;
+  public final int minPriority;
+  /** Empty means that every tag is accepted. */
+  public final Set<String> tags;
+
+  public FilteredLogger(ILogger underlying, int minPriority, String... tags) {
+    this.underlying = underlying;
+    this.minPriority = minPriority;
+    this.tags = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(tags)));
+  }
+
+  @Override
+  public void log(int priority, String tag, String message) {
+    underlying.log(priority, tag, message);
+  }
+
+  @Override
+  public void log(int priority, String tag, String message, Throwable throwable) {
+    underlying.log(priority, tag, message, throwable);
+  }
+
+  @Override public int minPriority() { return Math.max(minPriority, underlying.minPriority()); }
+
+  @Override public boolean acceptsTag(String tag) {
+    return (tags.isEmpty() || tags.contains(tag)) && underlying.acceptsTag(tag);
+  }
+}
@@ -7,4 +7,13 @@ package fp_csharp_unity.unity.logging;
 public interface ILogger {
   void log(int priority, String tag, String message);
   void log(int priority, String tag, String message, Throwable throwable);
+
+  /**
+   * Messages below this priority are not passed to this logger. {@link LoggerRegistry} caches this
+   * value, call {@link LoggerRegistry#refreshFilters()} if it changes after registration.
+   */
+  default int minPriority() { return Log.VERBOSE; }
+
+  /** Whether messages with this tag should be passed to this logger. */
+  default boolean acceptsTag(String tag) { return true; }
 }
@@ -1,7 +1,6 @@
 package fp_csharp_unity.unity.logging;
 
-import java.util.ArrayList;
-import java.util.List;
+import fp_csharp_unity.unity.fns.Fn1;
 
 /**
  * Created by Karolis Jucius on 2017-09-08.
@@ -17,21 +16,246 @@ public class Log {
     ASSERT = android.util.Log.ASSERT;
 
   @SuppressWarnings("WeakerAccess")
-  public final static List<ILogger> loggers = new ArrayList<>();
+  public final static LoggerRegistry registry = new LoggerRegistry();
 
-  static {
-    loggers.add(new AndroidLogger());
+  /** Unregister this to stop logging to logcat. */
+  @SuppressWarnings("WeakerAccess")
+  public final static LoggerRegistry.Registration androidLogger = registry.register(new AndroidLogger());
+
+  private static volatile AsyncLogDispatcher asyncDispatcher;
+  private static volatile LogRateLimiter rateLimiter;
+  // Rate limiter call site of plain message overloads. The message itself would give every distinct
+  // message its own bucket.
+  private static final String PLAIN_MESSAGE_SITE = "<plain message>";
+
+  @SuppressWarnings("unused")
+  public static LoggerRegistry.Registration register(ILogger logger) {
+    return registry.register(logger);
+  }
+
+  /**
+   * Whether any registered logger accepts this priority and tag. Use this to skip building
+   * expensive messages that would be thrown away anyway.
+   */
+  public static boolean isLoggable(int priority, String tag) {
+    return registry.isLoggable(priority, tag);
   }
 
   public static void log(int priority, String tag, String message) {
-    for (ILogger logger: loggers){
-      logger.log(priority, tag, message);
-    }
+    if (!accepts(priority, tag, PLAIN_MESSAGE_SITE)) return;
+    emit(priority, tag, message, null);
   }
 
   public static void log(int priority, String tag, String message, Throwable throwable) {
-    for (ILogger logger: loggers){
-      logger.log(priority, tag, message, throwable);
+    if (!accepts(priority, tag, PLAIN_MESSAGE_SITE)) return;
+    emit(priority, tag, message, throwable);
+  }
+
+  // Overloads below build the message only if a logger accepts the record. Templates use {}
+  // placeholders, which are filled with the arguments in order.
+
+  /** Calls {@code message} only if a logger accepts the record. */
+  public static void log(int priority, String tag, Fn1<String> message) {
+    if (!accepts(priority, tag, message.getClass())) return;
+    emit(priority, tag, message.run(), null);
+  }
+
+  /** Calls {@code message} only if a logger accepts the record. */
+  public static void log(int priority, String tag, Fn1<String> message, Throwable throwable) {
+    if (!accepts(priority, tag, message.getClass())) return;
+    emit(priority, tag, message.run(), throwable);
+  }
+
+  public static void log(int priority, String tag, String template, Object a0) {
+    if (!accepts(priority, tag, template)) return;
+    emit(priority, tag, MessageFormatter.acquire().arg(a0).format(template), null);
+  }
+
+  public static void log(int priority, String tag, String template, int a0) {
+    if (!accepts(priority, tag, template)) return;
+    emit(priority, tag, MessageFormatter.acquire().arg(a0).format(template), null);
+  }
+
+  public static void log(int priority, String tag, String template, long a0) {
+    if (!accepts(priority, tag, template)) return;
+    emit(priority, tag, MessageFormatter.acquire().arg(a0).format(template), null);
+  }
+
+  public static void log(int priority, String tag, String template, float a0) {
+    if (!accepts(priority, tag, template)) return;
+    emit(priority, tag, MessageFormatter.acquire().arg(a0).format(template), null);
+  }
+
+  public static void log(int priority, String tag, String template, boolean a0) {
+    if (!accepts(priority, tag, template)) return;
+    emit(priority, tag, MessageFormatter.acquire().arg(a0).format(template), null);
+  }
+
+  public static void log(int priority, String tag, String template, Object a0, Object a1) {
+    if (!accepts(priority, tag, template)) return;
+    emit(priority, tag, MessageFormatter.acquire().arg(a0).arg(a1).format(template), null);
+  }
+
+  public static void log(int priority, String tag, String template, Object a0, int a1) {
+    if (!accepts(priority, tag, template)) return;
+    emit(priority, tag, MessageFormatter.acquire().arg(a0).arg(a1).format(template), null);
+  }
+
+  public static void log(int priority, String tag, String template, Object a0, long a1) {
+    if (!accepts(priority, tag, template)) return;
+    emit(priority, tag, MessageFormatter.acquire().arg(a0).arg(a1).format(template), null);
+  }
+
+  public static void log(int priority, String tag, String template, Object a0, boolean a1) {
+    if (!accepts(priority, tag, template)) return;
+    emit(priority, tag, MessageFormatter.acquire().arg(a0).arg(a1).format(template), null);
+  }
+
+  public static void log(int priority, String tag, String template, int a0, int a1) {
+    if (!accepts(priority, tag, template)) return;
+    emit(priority, tag, MessageFormatter.acquire().arg(a0).arg(a1).format(template), null);
+  }
+
+  public static void log(int priority, String tag, String template, long a0, long a1) {
+    if (!accepts(priority, tag, template)) return;
+    emit(priority, tag, MessageFormatter.acquire().arg(a0).arg(a1).format(template), null);
+  }
+
+  public static void log(int priority, String tag, String template, Object a0, Object a1, Object a2) {
+    if (!accepts(priority, tag, template)) return;
+    emit(priority, tag, MessageFormatter.acquire().arg(a0).arg(a1).arg(a2).format(template), null);
+  }
+
+  public static void log(int priority, String tag, String template, Object a0, Throwable throwable) {
+    if (!accepts(priority, tag, template)) return;
+    emit(priority, tag, MessageFormatter.acquire().arg(a0).format(template), throwable);
+  }
+
+  public static void log(
+    int priority, String tag, String template, Object a0, Object a1, Throwable throwable
+  ) {
+    if (!accepts(priority, tag, template)) return;
+    emit(priority, tag, MessageFormatter.acquire().arg(a0).arg(a1).format(template), throwable);
+  }
+
+  /**
+   * Whether a logger accepts the record and the rate limiter lets it through. {@code site} identifies
+   * the call site for the rate limiter.
+   */
+  private static boolean accepts(int priority, String tag, Object site) {
+    if (!registry.isLoggable(priority, tag)) return false;
+    LogRateLimiter limiter = rateLimiter;
+    if (limiter == null) return true;
+    long dropped = limiter.acquire(priority, tag, site);
+    if (dropped == -1) return false;
+    if (dropped != 0) deliver(
+      priority, tag,
+      MessageFormatter.acquire().arg(dropped).arg(site instanceof Class ? ((Class<?>) site).getName() : site)
+        .format("Rate limited {} records like: {}"),
+      null
+    );
+    return true;
+  }
+
+  private static void emit(int priority, String tag, String message, Throwable throwable) {
+    LogRateLimiter limiter = rateLimiter;
+    if (limiter == null) deliver(priority, tag, message, throwable);
+    else limiter.process(priority, tag, message, throwable);
+  }
+
+  static void deliver(int priority, String tag, String message, Throwable throwable) {
+    AsyncLogDispatcher async = asyncDispatcher;
+    if (async == null || !async.enqueue(priority, tag, message, throwable))
+      dispatch(priority, tag, message, throwable);
+  }
+
+  /**
+   * Makes {@link #log} hand messages to a background thread instead of calling loggers on the
+   * caller's thread. Replaces the previous async dispatcher, if any.
+   *
+   * @param capacity how many records can wait for the background thread, rounded up to a power of two.
+   * @param batchSize how many records the background thread drains before checking whether it was stopped.
+   */
+  @SuppressWarnings("unused")
+  public static synchronized void enableAsync(
+    int capacity, int batchSize, AsyncLogDispatcher.OverflowPolicy overflowPolicy
+  ) {
+    AsyncLogDispatcher previous = asyncDispatcher;
+    asyncDispatcher = new AsyncLogDispatcher(capacity, batchSize, overflowPolicy);
+    if (previous != null) previous.shutdown(1000);
+  }
+
+  /** Goes back to synchronous logging after flushing what was already enqueued. */
+  @SuppressWarnings("unused")
+  public static synchronized void disableAsync() {
+    AsyncLogDispatcher previous = asyncDispatcher;
+    asyncDispatcher = null;
+    if (previous != null) previous.shutdown(1000);
+  }
+
+  /** Blocks until already enqueued async records reach the loggers. Returns true in sync mode. */
+  @SuppressWarnings("unused")
+  public static boolean flush(long timeoutMillis) {
+    AsyncLogDispatcher async = asyncDispatcher;
+    return async == null || async.flush(timeoutMillis);
+  }
+
+  /**
+   * Counters of the current async dispatcher as [enqueued, dropped, flushed, queued], or all zeroes
+   * when logging is synchronous.
+   */
+  @SuppressWarnings("unused")
+  public static long[] asyncStats() {
+    AsyncLogDispatcher async = asyncDispatcher;
+    if (async == null) return new long[4];
+    return new long[] {
+      async.enqueuedCount(), async.droppedCount(), async.flushedCount(), async.queuedCount()
+    };
+  }
+
+  /**
+   * Limits every (tag, priority, call site) to {@code permitsPerSecond} records with bursts of up to
+   * {@code burst} and optionally collapses identical consecutive records, see {@link LogRateLimiter}.
+   * Replaces the previous settings, if any.
+   *
+   * @param maxTrackedKeys how many call sites are remembered, least recently used are forgotten first.
+   * @param summaryIntervalMillis how often a summary of an ongoing run of duplicates is logged.
+   */
+  @SuppressWarnings("unused")
+  public static synchronized void enableRateLimiting(
+    double permitsPerSecond, int burst, int maxTrackedKeys, boolean collapseDuplicates,
+    long summaryIntervalMillis
+  ) {
+    LogRateLimiter previous = rateLimiter;
+    rateLimiter = new LogRateLimiter(
+      permitsPerSecond, burst, maxTrackedKeys, collapseDuplicates, summaryIntervalMillis
+    );
+    if (previous != null) previous.close();
+  }
+
+  /** Lets all records through again. Pending duplicate summaries are logged. */
+  @SuppressWarnings("unused")
+  public static synchronized void disableRateLimiting() {
+    LogRateLimiter previous = rateLimiter;
+    rateLimiter = null;
+    if (previous != null) previous.close();
+  }
+
+  /**
+   * Counters of the current rate limiter as [rate limited, collapsed duplicates, tracked keys], or
+   * all zeroes when rate limiting is disabled.
+   */
+  @SuppressWarnings("unused")
+  public static long[] rateLimitStats() {
+    LogRateLimiter limiter = rateLimiter;
+    return limiter == null ? new long[3] : limiter.stats();
+  }
+
+  static void dispatch(int priority, String tag, String message, Throwable throwable) {
+    for (ILogger logger: registry.loggers()){
+      if (!LoggerRegistry.accepts(logger, priority, tag)) continue;
+      if (throwable == null) logger.log(priority, tag, message);
+      else logger.log(priority, tag, message, throwable);
     }
   }
 
@@ -0,0 +1,252 @@
+package fp_csharp_unity.unity.logging;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiting stage of {@link Log}, see {@link Log#enableRateLimiting}.
+ * <ul>
+ *   <li>Every (tag, priority, call site) has a token bucket. The call site is the message template
+ *   or the class of a message supplier. Plain messages share one call site per (tag, priority), so
+ *   messages with varying content still count against one bucket. Records over the limit are
+ *   dropped and their count is reported with the next record that gets through.</li>
+ *   <li>Identical consecutive records are collapsed into a "repeated N times" summary, which is
+ *   logged when a different record arrives, every {@code summaryIntervalMillis} while the run goes
+ *   on and at most {@code summaryIntervalMillis} after it stops. The last one comes from a shared
+ *   background timer thread.</li>
+ * </ul>
+ * Only the {@code maxTrackedKeys} most recently used buckets are kept. Call {@link #close()} when
+ * the limiter is no longer used.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class LogRateLimiter {
+  private static final class Key {
+    String tag;
+    int priority;
+    Object site;
+
+    Key set(String tag, int priority, Object site) {
+      this.tag = tag;
+      this.priority = priority;
+      this.site = site;
+      return this;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (!(o instanceof Key)) return false;
+      Key other = (Key) o;
+      return priority == other.priority && Objects.equals(tag, other.tag) && Objects.equals(site, other.site);
+    }
+
+    @Override public int hashCode() {
+      return (31 * Objects.hashCode(tag) + priority) * 31 + Objects.hashCode(site);
+    }
+  }
+
+  private static final class Bucket {
+    double tokens;
+    long refilledAtNanos;
+    long suppressed;
+
+    Bucket(double tokens, long refilledAtNanos) {
+      this.tokens = tokens;
+      this.refilledAtNanos = refilledAtNanos;
+    }
+  }
+
+  // Runs the summaries of stopped duplicate runs for all limiters.
+  private static ScheduledExecutorService timer;
+
+  private static synchronized ScheduledExecutorService timer() {
+    if (timer == null) {
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "FPCSharpUnity-LogRateLimiter");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      executor.setRemoveOnCancelPolicy(true);
+      timer = executor;
+    }
+    return timer;
+  }
+
+  public final double permitsPerSecond;
+  public final int burst, maxTrackedKeys;
+  public final boolean collapseDuplicates;
+  public final long summaryIntervalNanos;
+
+  // Everything below is guarded by this.
+  private final LinkedHashMap<Key, Bucket> buckets;
+  // Reused for lookups, so hits do not allocate.
+  private final Key lookupKey = new Key();
+
+  private int lastPriority;
+  private String lastTag, lastMessage;
+  private Class<?> lastThrowableClass;
+  private long repeats, repeatsSinceNanos;
+
+  private long rateLimitedCount, collapsedCount;
+
+  private final ScheduledFuture<?> summaryTask;
+
+  /**
+   * @param permitsPerSecond sustained records per second allowed for every key.
+   * @param burst records allowed at once before the rate applies.
+   * @param collapseDuplicates whether identical consecutive records are collapsed.
+   * @param summaryIntervalMillis how often a summary of an ongoing run of duplicates is logged,
+   *                              must be positive if {@code collapseDuplicates} is set.
+   */
+  public LogRateLimiter(
+    double permitsPerSecond, int burst, final int maxTrackedKeys, boolean collapseDuplicates,
+    long summaryIntervalMillis
+  ) {
+    if (permitsPerSecond <= 0 || burst < 1 || maxTrackedKeys < 1) throw new IllegalArgumentException(
+      "permitsPerSecond (" + permitsPerSecond + "), burst (" + burst + ") and maxTrackedKeys ("
+      + maxTrackedKeys + ") must be positive"
+    );
+    if (collapseDuplicates && summaryIntervalMillis <= 0) throw new IllegalArgumentException(
+      "summaryIntervalMillis (" + summaryIntervalMillis + ") must be positive when collapsing duplicates"
+    );
+    this.permitsPerSecond = permitsPerSecond;
+    this.burst = burst;
+    this.maxTrackedKeys = maxTrackedKeys;
+    this.collapseDuplicates = collapseDuplicates;
+    this.summaryIntervalNanos = summaryIntervalMillis * 1_000_000;
+    buckets = new LinkedHashMap<Key, Bucket>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Bucket> eldest) {
+        return size() > maxTrackedKeys;
+      }
+    };
+    summaryTask = collapseDuplicates
+      ? timer().scheduleWithFixedDelay(new Runnable() {
+          @Override
+          public void run() { flushRepeats(false); }
+        }, summaryIntervalMillis, summaryIntervalMillis, TimeUnit.MILLISECONDS)
+      : null;
+  }
+
+  /** Stops the summary timer of this limiter and logs the summary of a pending run of duplicates. */
+  public void close() {
+    if (summaryTask != null) summaryTask.cancel(false);
+    flushRepeats(true);
+  }
+
+  /**
+   * Logs the summary of the current run of duplicates if it has waited for {@code summaryIntervalMillis},
+   * or right away if {@code force} is set.
+   */
+  void flushRepeats(boolean force) {
+    long now = System.nanoTime();
+    int summaryPriority;
+    String summaryTag, summaryMessage;
+    long summaryRepeats;
+    synchronized (this) {
+      if (repeats == 0 || !force && now - repeatsSinceNanos < summaryIntervalNanos) return;
+      summaryPriority = lastPriority;
+      summaryTag = lastTag;
+      summaryMessage = lastMessage;
+      summaryRepeats = repeats;
+      repeats = 0;
+      repeatsSinceNanos = now;
+    }
+    deliverSummary(summaryPriority, summaryTag, summaryMessage, summaryRepeats);
+  }
+
+  private static void deliverSummary(int priority, String tag, String message, long repeats) {
+    Log.deliver(
+      priority, tag, MessageFormatter.acquire().arg(repeats).arg(message).format("Repeated {} times: {}"), null
+    );
+  }
+
+  /**
+   * Takes a token for the key, before the message is built.
+   *
+   * @return -1 if the record should be dropped, otherwise the number of records of this key that
+   *         were dropped since the last one that got through.
+   */
+  long acquire(int priority, String tag, Object site) {
+    long now = System.nanoTime();
+    synchronized (this) {
+      Bucket bucket = buckets.get(lookupKey.set(tag, priority, site));
+      if (bucket == null) {
+        bucket = new Bucket(burst, now);
+        buckets.put(new Key().set(tag, priority, site), bucket);
+      }
+      else {
+        double refill = (now - bucket.refilledAtNanos) * permitsPerSecond / 1e9;
+        bucket.tokens = Math.min(burst, bucket.tokens + refill);
+        bucket.refilledAtNanos = now;
+      }
+      // Do not keep the caller's strings alive through the lookup key.
+      lookupKey.set(null, 0, null);
+
+      if (bucket.tokens < 1) {
+        bucket.suppressed++;
+        rateLimitedCount++;
+        return -1;
+      }
+      bucket.tokens -= 1;
+      long suppressed = bucket.suppressed;
+      bucket.suppressed = 0;
+      return suppressed;
+    }
+  }
+
+  /** Collapses duplicates and hands everything else, with repeat summaries, to {@link Log#deliver}. */
+  void process(int priority, String tag, String message, Throwable throwable) {
+    if (!collapseDuplicates) {
+      Log.deliver(priority, tag, message, throwable);
+      return;
+    }
+
+    long now = System.nanoTime();
+    int summaryPriority = 0;
+    String summaryTag = null, summaryMessage = null;
+    long summaryRepeats = 0;
+    boolean duplicate;
+    Class<?> throwableClass = throwable == null ? null : throwable.getClass();
+    synchronized (this) {
+      duplicate =
+        priority == lastPriority && throwableClass == lastThrowableClass
+        && Objects.equals(tag, lastTag) && Objects.equals(message, lastMessage);
+      if (duplicate) {
+        collapsedCount++;
+        if (repeats++ == 0) repeatsSinceNanos = now;
+        if (now - repeatsSinceNanos < summaryIntervalNanos) return;
+      }
+
+      if (repeats != 0) {
+        summaryPriority = lastPriority;
+        summaryTag = lastTag;
+        summaryMessage = lastMessage;
+        summaryRepeats = repeats;
+        repeats = 0;
+        repeatsSinceNanos = now;
+      }
+      if (!duplicate) {
+        lastPriority = priority;
+        lastTag = tag;
+        lastMessage = message;
+        lastThrowableClass = throwableClass;
+      }
+    }
+
+    if (summaryRepeats != 0) deliverSummary(summaryPriority, summaryTag, summaryMessage, summaryRepeats);
+    if (!duplicate) Log.deliver(priority, tag, message, throwable);
+  }
+
+  /** Statistics as [records dropped by the rate limit, collapsed duplicates, tracked keys]. */
+  public synchronized long[] stats() {
+    return new long[] { rateLimitedCount, collapsedCount, buckets.size() };
+  }
+}
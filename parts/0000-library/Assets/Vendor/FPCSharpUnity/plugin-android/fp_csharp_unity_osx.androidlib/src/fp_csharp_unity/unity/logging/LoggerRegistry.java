@@ -0,0 +1,73 @@
+package fp_csharp_unity.unity.logging;
+
+/**
+ * Copy-on-write set of {@link ILogger}s.
+ * <p>
+ * Registration is rare, logging is hot: {@link #loggers()} and {@link #isLoggable(int, String)}
+ * only read a volatile field, so they never block and can't see a half updated registry.
+ */
+@SuppressWarnings("WeakerAccess")
+public class LoggerRegistry {
+  public class Registration {
+    public final ILogger logger;
+
+    Registration(ILogger logger) { this.logger = logger; }
+
+    /** Removes the logger from the registry. Calling this more than once does nothing. */
+    public void unregister() { LoggerRegistry.this.unregister(logger); }
+  }
+
+  private static final ILogger[] EMPTY = new ILogger[0];
+
+  private volatile ILogger[] loggers = EMPTY;
+  private volatile int minPriority = Integer.MAX_VALUE;
+
+  public synchronized Registration register(ILogger logger) {
+    if (logger == null) throw new IllegalArgumentException("logger can't be null");
+    ILogger[] current = loggers;
+    ILogger[] updated = new ILogger[current.length + 1];
+    System.arraycopy(current, 0, updated, 0, current.length);
+    updated[current.length] = logger;
+    loggers = updated;
+    minPriority = Math.min(minPriority, logger.minPriority());
+    return new Registration(logger);
+  }
+
+  synchronized void unregister(ILogger logger) {
+    ILogger[] current = loggers;
+    int index = -1;
+    for (int idx = 0; idx < current.length; idx++) {
+      if (current[idx] == logger) { index = idx; break; }
+    }
+    if (index == -1) return;
+
+    ILogger[] updated = new ILogger[current.length - 1];
+    System.arraycopy(current, 0, updated, 0, index);
+    System.arraycopy(current, index + 1, updated, index, updated.length - index);
+    loggers = updated;
+    refreshFilters();
+  }
+
+  /** Recomputes the cached minimum priority after a registered logger changed its filters. */
+  public synchronized void refreshFilters() {
+    int min = Integer.MAX_VALUE;
+    for (ILogger logger : loggers) min = Math.min(min, logger.minPriority());
+    minPriority = min;
+  }
+
+  /** Current loggers. The returned array is shared and must not be modified. */
+  public ILogger[] loggers() { return loggers; }
+
+  /** Whether at least one registered logger accepts a message with this priority and tag. */
+  public boolean isLoggable(int priority, String tag) {
+    if (priority < minPriority) return false;
+    for (ILogger logger : loggers) {
+      if (accepts(logger, priority, tag)) return true;
+    }
+    return false;
+  }
+
+  static boolean accepts(ILogger logger, int priority, String tag) {
+    return priority >= logger.minPriority() && logger.acceptsTag(tag);
+  }
+}
@@ -0,0 +1,407 @@
+package fp_csharp_unity.unity.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ILogger} that writes binary records into a fixed size memory-mapped ring file.
+ * <p>
+ * Records go straight into the page cache, so writing one is a copy into memory without a system
+ * call, and the last records survive a crash of the process. Writers claim space with a CAS and do
+ * not lock each other. Use {@link #dump(File, Appendable)} to turn a ring file into text, for
+ * example to upload it on the next start.
+ * <p>
+ * File layout, little endian:
+ * <ul>
+ *   <li>Header: magic, format version, data capacity, tag slot count.</li>
+ *   <li>Tag table: {@link #TAG_SLOTS} slots of a length byte followed by UTF-8 bytes.</li>
+ *   <li>Data ring of 8 byte aligned records: magic, length, sequence, timestamp in milliseconds,
+ *   priority and tag id, message length and UTF-8 message bytes. A record that does not fit before
+ *   the end of the ring is preceded by a padding record and starts at the beginning.</li>
+ * </ul>
+ * The sequence of a record is the 64-bit position its space was claimed at, counting all bytes
+ * ever written to the ring, so sequence order is ring order even with concurrent writers.
+ * A writer that is lapped by the others while copying its record corrupts that record. With rings
+ * of a few megabytes that is not a practical concern.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class MappedRingLogger implements ILogger {
+  // Version 1 used a separate counter as the sequence.
+  static final int FILE_MAGIC = 0x4650524C, FORMAT_VERSION = 2;
+  static final int RECORD_MAGIC = 0x52454331, PADDING_MAGIC = 0x50414431;
+
+  static final int HEADER_SIZE = 64;
+  static final int TAG_SLOTS = 256, TAG_SLOT_SIZE = 32;
+  static final int TAG_TABLE_OFFSET = HEADER_SIZE;
+  static final int DATA_OFFSET = TAG_TABLE_OFFSET + TAG_SLOTS * TAG_SLOT_SIZE;
+
+  // Record field offsets.
+  static final int
+    R_MAGIC = 0, R_LENGTH = 4, R_SEQUENCE = 8, R_TIMESTAMP = 16, R_PRIORITY_TAG = 24, R_MESSAGE_LENGTH = 28,
+    R_MESSAGE = 32;
+  static final int ALIGNMENT = 8;
+  /** Tag id of records whose tag did not fit into the tag table, the tag is prepended to the message. */
+  static final int NO_TAG = 0xFFFFFF;
+
+  /** Per writer space to encode messages in and a view of the ring to bulk copy them with. */
+  private static final class WriterScratch {
+    final byte[] bytes;
+    final ByteBuffer view;
+
+    WriterScratch(int maxBytes, ByteBuffer buffer) {
+      bytes = new byte[maxBytes];
+      view = buffer.duplicate();
+    }
+  }
+
+  public final File file;
+  public final int capacity;
+  public final int minPriority;
+  private final int maxMessageBytes;
+
+  private final MappedByteBuffer buffer;
+  // Bytes claimed since the ring was created, the ring offset is this modulo capacity.
+  private final AtomicLong position = new AtomicLong();
+  private final ThreadLocal<WriterScratch> scratch = new ThreadLocal<>();
+  private final ConcurrentHashMap<String, Integer> tagIds = new ConcurrentHashMap<>();
+  // Guarded by tagIds.
+  private int tagCount;
+
+  /**
+   * Opens or creates the ring file. Records of an existing file with the same capacity are kept
+   * and new records continue after them, otherwise the file is reset.
+   *
+   * @param capacity size of the data ring in bytes, rounded down to a multiple of 8.
+   */
+  public MappedRingLogger(File file, int capacity, int minPriority) throws IOException {
+    if (capacity < 4096) throw new IllegalArgumentException("capacity must be at least 4096, was " + capacity);
+    this.file = file;
+    this.capacity = capacity & ~(ALIGNMENT - 1);
+    this.minPriority = minPriority;
+    maxMessageBytes = Math.min(this.capacity / 4, 64 * 1024);
+
+    try (
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      FileChannel channel = raf.getChannel()
+    ) {
+      // The mapping stays valid after the channel is closed.
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + (long) this.capacity);
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+    if (buffer.getInt(0) == FILE_MAGIC && buffer.getInt(4) == FORMAT_VERSION && buffer.getInt(8) == this.capacity)
+      recover();
+    else
+      reset();
+  }
+
+  private void reset() {
+    for (int idx = 0; idx < DATA_OFFSET + capacity; idx += 8) buffer.putLong(idx, 0);
+    buffer.putInt(4, FORMAT_VERSION);
+    buffer.putInt(8, capacity);
+    buffer.putInt(12, TAG_SLOTS);
+    // Magic last, so a half initialized file is not taken as valid.
+    buffer.putInt(0, FILE_MAGIC);
+  }
+
+  private void recover() {
+    String[] tags = readTags(buffer);
+    for (int idx = 0; idx < tags.length && tags[idx] != null; idx++) {
+      tagIds.put(tags[idx], idx);
+      tagCount = idx + 1;
+    }
+
+    // The furthest claimed record, new ones continue right after it.
+    long end = 0;
+    for (Record record : scan(buffer, capacity, tags)) {
+      end = Math.max(end, record.sequence + record.length);
+    }
+    position.set(end);
+  }
+
+  @Override public int minPriority() { return minPriority; }
+
+  @Override
+  public void log(int priority, String tag, String message) {
+    write(priority, tag, message);
+  }
+
+  @Override
+  public void log(int priority, String tag, String message, Throwable throwable) {
+    write(priority, tag, message + "\n" + android.util.Log.getStackTraceString(throwable));
+  }
+
+  /** Flushes the written records to the storage, which is only needed to survive a device crash. */
+  public void force() { buffer.force(); }
+
+  private void write(int priority, String tag, String message) {
+    int tagId = tagId(tag);
+    if (tagId == NO_TAG) message = "[" + tag + "] " + message;
+
+    int messageChars = utf8Chars(message, maxMessageBytes);
+    int messageBytes = utf8Length(message, messageChars);
+    int length = align(R_MESSAGE + messageBytes);
+
+    WriterScratch writerScratch = scratch.get();
+    if (writerScratch == null) {
+      writerScratch = new WriterScratch(maxMessageBytes, buffer);
+      scratch.set(writerScratch);
+    }
+    writeUtf8(writerScratch.bytes, message, messageChars);
+
+    long recordPosition = claim(length);
+    int base = DATA_OFFSET + (int) (recordPosition % capacity);
+    // Invalidate whatever was there before filling in the record.
+    buffer.putInt(base + R_MAGIC, 0);
+    buffer.putInt(base + R_LENGTH, length);
+    buffer.putLong(base + R_SEQUENCE, recordPosition);
+    buffer.putLong(base + R_TIMESTAMP, System.currentTimeMillis());
+    buffer.putInt(base + R_PRIORITY_TAG, (priority << 24) | tagId);
+    buffer.putInt(base + R_MESSAGE_LENGTH, messageBytes);
+    writerScratch.view.position(base + R_MESSAGE);
+    writerScratch.view.put(writerScratch.bytes, 0, messageBytes);
+    buffer.putInt(base + R_MAGIC, RECORD_MAGIC);
+  }
+
+  /**
+   * Claims {@code length} bytes of the ring.
+   *
+   * @return position of the claimed space, its ring offset is the position modulo {@link #capacity}.
+   */
+  private long claim(int length) {
+    while (true) {
+      long current = position.get();
+      int offset = (int) (current % capacity);
+      int padding = offset + length > capacity ? capacity - offset : 0;
+      if (position.compareAndSet(current, current + padding + length)) {
+        if (padding != 0) {
+          buffer.putInt(DATA_OFFSET + offset + R_LENGTH, padding);
+          buffer.putInt(DATA_OFFSET + offset + R_MAGIC, PADDING_MAGIC);
+        }
+        return current + padding;
+      }
+    }
+  }
+
+  private int tagId(String tag) {
+    // ConcurrentHashMap does not take null keys, a null tag is stored as the empty one.
+    if (tag == null) tag = "";
+    Integer id = tagIds.get(tag);
+    if (id != null) return id;
+
+    synchronized (tagIds) {
+      id = tagIds.get(tag);
+      if (id != null) return id;
+
+      byte[] bytes = tag.getBytes(StandardCharsets.UTF_8);
+      if (tagCount == TAG_SLOTS || bytes.length >= TAG_SLOT_SIZE) return NO_TAG;
+      int slot = TAG_TABLE_OFFSET + tagCount * TAG_SLOT_SIZE;
+      for (int idx = 0; idx < bytes.length; idx++) buffer.put(slot + 1 + idx, bytes[idx]);
+      buffer.put(slot, (byte) bytes.length);
+      tagIds.put(tag, tagCount);
+      return tagCount++;
+    }
+  }
+
+  static int align(int length) { return (length + ALIGNMENT - 1) & ~(ALIGNMENT - 1); }
+
+  /** Number of chars of {@code s} that fit into {@code maxBytes} of UTF-8. */
+  private static int utf8Chars(String s, int maxBytes) {
+    int bytes = 0;
+    for (int idx = 0; idx < s.length(); idx++) {
+      char c = s.charAt(idx);
+      int size;
+      if (c < 0x80) size = 1;
+      else if (c < 0x800) size = 2;
+      else if (Character.isHighSurrogate(c) && idx + 1 < s.length() && Character.isLowSurrogate(s.charAt(idx + 1))) {
+        if (bytes + 4 > maxBytes) return idx;
+        bytes += 4;
+        idx++;
+        continue;
+      }
+      else size = 3;
+      if (bytes + size > maxBytes) return idx;
+      bytes += size;
+    }
+    return s.length();
+  }
+
+  private static int utf8Length(String s, int chars) {
+    int bytes = 0;
+    for (int idx = 0; idx < chars; idx++) {
+      char c = s.charAt(idx);
+      if (c < 0x80) bytes += 1;
+      else if (c < 0x800) bytes += 2;
+      else if (Character.isHighSurrogate(c) && idx + 1 < chars && Character.isLowSurrogate(s.charAt(idx + 1))) {
+        bytes += 4;
+        idx++;
+      }
+      else bytes += 3;
+    }
+    return bytes;
+  }
+
+  private static void writeUtf8(byte[] bytes, String s, int chars) {
+    int index = 0;
+    for (int idx = 0; idx < chars; idx++) {
+      int c = s.charAt(idx);
+      if (c < 0x80) {
+        bytes[index++] = (byte) c;
+      }
+      else if (c < 0x800) {
+        bytes[index++] = (byte) (0xC0 | (c >> 6));
+        bytes[index++] = (byte) (0x80 | (c & 0x3F));
+      }
+      else if (Character.isHighSurrogate((char) c) && idx + 1 < chars && Character.isLowSurrogate(s.charAt(idx + 1))) {
+        int codePoint = Character.toCodePoint((char) c, s.charAt(++idx));
+        bytes[index++] = (byte) (0xF0 | (codePoint >> 18));
+        bytes[index++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        bytes[index++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        bytes[index++] = (byte) (0x80 | (codePoint & 0x3F));
+      }
+      else {
+        // Lone surrogates are encoded like other chars of the basic plane, as CESU-8 does.
+        bytes[index++] = (byte) (0xE0 | (c >> 12));
+        bytes[index++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        bytes[index++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  /** Decoded record of a ring file. */
+  public static final class Record {
+    public final long sequence, timestampMillis;
+    public final int priority;
+    public final String tag, message;
+    final int offset, length;
+
+    Record(int offset, int length, long sequence, long timestampMillis, int priority, String tag, String message) {
+      this.offset = offset;
+      this.length = length;
+      this.sequence = sequence;
+      this.timestampMillis = timestampMillis;
+      this.priority = priority;
+      this.tag = tag;
+      this.message = message;
+    }
+  }
+
+  /**
+   * Reads all intact records of a ring file, oldest first.
+   *
+   * @return empty list if the file is not a ring file.
+   */
+  public static List<Record> read(File file) throws IOException {
+    try (
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      FileChannel channel = raf.getChannel()
+    ) {
+      if (channel.size() < DATA_OFFSET) return Collections.emptyList();
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      int capacity = buffer.getInt(8);
+      if (
+        buffer.getInt(0) != FILE_MAGIC || buffer.getInt(4) != FORMAT_VERSION
+        || capacity <= 0 || DATA_OFFSET + (long) capacity > channel.size()
+      ) return Collections.emptyList();
+
+      List<Record> records = scan(buffer, capacity, readTags(buffer));
+      Collections.sort(records, new Comparator<Record>() {
+        @Override
+        public int compare(Record a, Record b) {
+          return Long.compare(a.sequence, b.sequence);
+        }
+      });
+      return records;
+    }
+  }
+
+  /** Writes all intact records of a ring file as text lines, oldest first. */
+  public static void dump(File file, Appendable out) throws IOException {
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+    for (Record record : read(file)) {
+      out.append(format.format(new Date(record.timestampMillis)))
+        .append(' ').append(priorityLetter(record.priority))
+        .append('/').append(record.tag)
+        .append(": ").append(record.message)
+        .append('\n');
+    }
+  }
+
+  private static char priorityLetter(int priority) {
+    switch (priority) {
+      case Log.VERBOSE: return 'V';
+      case Log.DEBUG: return 'D';
+      case Log.INFO: return 'I';
+      case Log.WARN: return 'W';
+      case Log.ERROR: return 'E';
+      case Log.ASSERT: return 'A';
+      default: return '?';
+    }
+  }
+
+  private static String[] readTags(ByteBuffer buffer) {
+    String[] tags = new String[TAG_SLOTS];
+    for (int idx = 0; idx < TAG_SLOTS; idx++) {
+      int slot = TAG_TABLE_OFFSET + idx * TAG_SLOT_SIZE;
+      int length = buffer.get(slot);
+      if (length <= 0 || length >= TAG_SLOT_SIZE) break;
+      byte[] bytes = new byte[length];
+      for (int byteIdx = 0; byteIdx < length; byteIdx++) bytes[byteIdx] = buffer.get(slot + 1 + byteIdx);
+      tags[idx] = new String(bytes, StandardCharsets.UTF_8);
+    }
+    return tags;
+  }
+
+  /**
+   * Walks the ring looking for intact records. Parts that are not, like records that were being
+   * written or were partially overwritten, are skipped {@link #ALIGNMENT} bytes at a time.
+   */
+  private static List<Record> scan(ByteBuffer buffer, int capacity, String[] tags) {
+    List<Record> records = new ArrayList<>();
+    ByteBuffer reader = buffer.duplicate();
+    int offset = 0;
+    while (offset + R_MESSAGE <= capacity) {
+      int base = DATA_OFFSET + offset;
+      int magic = buffer.getInt(base + R_MAGIC), length = buffer.getInt(base + R_LENGTH);
+      if (magic == PADDING_MAGIC && offset + length == capacity) break;
+
+      int messageLength = buffer.getInt(base + R_MESSAGE_LENGTH);
+      boolean valid =
+        magic == RECORD_MAGIC && length >= R_MESSAGE && offset + length <= capacity
+        && messageLength >= 0 && align(R_MESSAGE + messageLength) == length;
+      if (!valid) {
+        offset += ALIGNMENT;
+        continue;
+      }
+
+      int priorityTag = buffer.getInt(base + R_PRIORITY_TAG);
+      int tagId = priorityTag & 0xFFFFFF;
+      String tag = tagId == NO_TAG ? "" : tagId < tags.length && tags[tagId] != null ? tags[tagId] : "#" + tagId;
+      byte[] message = new byte[messageLength];
+      reader.position(base + R_MESSAGE);
+      reader.get(message);
+      records.add(new Record(
+        offset, length, buffer.getLong(base + R_SEQUENCE), buffer.getLong(base + R_TIMESTAMP),
+        priorityTag >>> 24, tag, new String(message, StandardCharsets.UTF_8)
+      ));
+      offset += length;
+    }
+    return records;
+  }
+}
@@ -0,0 +1,97 @@
+package fp_csharp_unity.unity.logging;
+
+/**
+ * Fills {@code {}} placeholders of log message templates, in order, with the given arguments.
+ * <p>
+ * One instance per thread is reused, so primitive arguments are not boxed and the builder is not
+ * reallocated. Placeholders without an argument are kept as they are and extra arguments are ignored.
+ */
+final class MessageFormatter {
+  private static final int MAX_ARGS = 3;
+  // Builders that grew larger than this are not kept around.
+  private static final int MAX_RETAINED_CAPACITY = 4096;
+  private static final byte OBJECT = 0, LONG = 1, FLOAT = 2, BOOLEAN = 3;
+
+  private static final ThreadLocal<MessageFormatter> instances = new ThreadLocal<MessageFormatter>() {
+    @Override
+    protected MessageFormatter initialValue() {
+      return new MessageFormatter();
+    }
+  };
+
+  private StringBuilder sb = new StringBuilder(128);
+  private final byte[] kinds = new byte[MAX_ARGS];
+  private final long[] primitives = new long[MAX_ARGS];
+  private final Object[] objects = new Object[MAX_ARGS];
+  private int argCount;
+  private boolean inUse;
+
+  /**
+   * Returns the formatter of this thread, or a new one if it is already in use, which happens when
+   * an argument's {@code toString} logs as well.
+   */
+  static MessageFormatter acquire() {
+    MessageFormatter formatter = instances.get();
+    if (formatter.inUse) formatter = new MessageFormatter();
+    formatter.inUse = true;
+    return formatter;
+  }
+
+  MessageFormatter arg(Object value) {
+    objects[argCount] = value;
+    kinds[argCount++] = OBJECT;
+    return this;
+  }
+
+  MessageFormatter arg(long value) {
+    primitives[argCount] = value;
+    kinds[argCount++] = LONG;
+    return this;
+  }
+
+  MessageFormatter arg(float value) {
+    primitives[argCount] = Float.floatToRawIntBits(value);
+    kinds[argCount++] = FLOAT;
+    return this;
+  }
+
+  MessageFormatter arg(boolean value) {
+    primitives[argCount] = value ? 1 : 0;
+    kinds[argCount++] = BOOLEAN;
+    return this;
+  }
+
+  /** Builds the message and releases the formatter. */
+  String format(String template) {
+    try {
+      sb.setLength(0);
+      int argIdx = 0, start = 0;
+      while (true) {
+        int placeholder = argIdx < argCount ? template.indexOf("{}", start) : -1;
+        if (placeholder == -1) {
+          sb.append(template, start, template.length());
+          break;
+        }
+        sb.append(template, start, placeholder);
+        appendArg(argIdx++);
+        start = placeholder + 2;
+      }
+      return sb.toString();
+    }
+    finally {
+      for (int idx = 0; idx < argCount; idx++) objects[idx] = null;
+      argCount = 0;
+      if (sb.capacity() > MAX_RETAINED_CAPACITY) sb = new StringBuilder(128);
+      inUse = false;
+    }
+  }
+
+  private void appendArg(int idx) {
+    switch (kinds[idx]) {
+      case LONG: sb.append(primitives[idx]); break;
+      case FLOAT: sb.append(Float.intBitsToFloat((int) primitives[idx])); break;
+      case BOOLEAN: sb.append(primitives[idx] != 0); break;
+      default: sb.append(objects[idx]); break;
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package fp_csharp_unity.unity.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Monotonically increasing value, like number of calls. */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class Counter extends Metric {
+    private final AtomicLong value = new AtomicLong();
+
+    Counter(String name) { super(name); }
+
+    public void increment() { value.incrementAndGet(); }
+    public void add(long delta) { value.addAndGet(delta); }
+    public long get() { return value.get(); }
+
+    @Override int kind() { return Metrics.KIND_COUNTER; }
+    @Override int valueCount() { return 1; }
+    @Override void writeTo(long[] values, int offset) { values[offset] = value.get(); }
+}
@@ -0,0 +1,16 @@
+package fp_csharp_unity.unity.metrics;
+
+/** Value that can go up and down, like a queue depth. Only the last set value is kept. */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class Gauge extends Metric {
+    private volatile long value;
+
+    Gauge(String name) { super(name); }
+
+    public void set(long value) { this.value = value; }
+    public long get() { return value; }
+
+    @Override int kind() { return Metrics.KIND_GAUGE; }
+    @Override int valueCount() { return 1; }
+    @Override void writeTo(long[] values, int offset) { values[offset] = value; }
+}
@@ -0,0 +1,55 @@
+package fp_csharp_unity.unity.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations with fixed power of two buckets over microseconds.
+ * <p>
+ * Bucket {@code i} counts durations in {@code [2^i, 2^(i + 1))} microseconds, except that the first
+ * bucket also takes everything below 1 microsecond and the last bucket everything above its lower
+ * bound. Recording is lock-free and does not allocate.
+ * <p>
+ * Snapshot values: [count, sum of nanoseconds, max nanoseconds, bucket counts...].
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class LatencyHistogram extends Metric {
+    /** Last bucket starts at 2^(BUCKET_COUNT - 1) microseconds, ~8.4 seconds. */
+    public static final int BUCKET_COUNT = 24;
+
+    private final AtomicLong count = new AtomicLong(), sumNanos = new AtomicLong(), maxNanos = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    LatencyHistogram(String name) { super(name); }
+
+    /** Records a duration that started at {@code startNanos}, as returned by {@link System#nanoTime()}. */
+    public void recordSince(long startNanos) { record(System.nanoTime() - startNanos); }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        count.incrementAndGet();
+        sumNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {}
+        buckets.incrementAndGet(bucketIndex(nanos));
+    }
+
+    static int bucketIndex(long nanos) {
+        long micros = nanos / 1000;
+        if (micros == 0) return 0;
+        return Math.min(63 - Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1);
+    }
+
+    public long count() { return count.get(); }
+
+    @Override int kind() { return Metrics.KIND_HISTOGRAM; }
+    @Override int valueCount() { return 3 + BUCKET_COUNT; }
+
+    @Override
+    void writeTo(long[] values, int offset) {
+        values[offset] = count.get();
+        values[offset + 1] = sumNanos.get();
+        values[offset + 2] = maxNanos.get();
+        for (int idx = 0; idx < BUCKET_COUNT; idx++) values[offset + 3 + idx] = buckets.get(idx);
+    }
+}
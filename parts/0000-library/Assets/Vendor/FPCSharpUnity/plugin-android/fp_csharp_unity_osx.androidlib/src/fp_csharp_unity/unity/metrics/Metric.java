@@ -0,0 +1,17 @@
+package fp_csharp_unity.unity.metrics;
+
+/** Base of the metrics in {@link Metrics}, knows how to write itself into a snapshot. */
+@SuppressWarnings("WeakerAccess")
+public abstract class Metric {
+    public final String name;
+
+    Metric(String name) { this.name = name; }
+
+    /** One of {@code Metrics.KIND_*}. */
+    abstract int kind();
+
+    /** Number of longs {@link #writeTo} writes. */
+    abstract int valueCount();
+
+    abstract void writeTo(long[] values, int offset);
+}
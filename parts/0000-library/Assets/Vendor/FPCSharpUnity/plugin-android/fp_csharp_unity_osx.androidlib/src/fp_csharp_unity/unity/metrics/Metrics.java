@@ -0,0 +1,144 @@
+package fp_csharp_unity.unity.metrics;
+
+import java.util.HashMap;
+
+/**
+ * Process wide registry of the plugin's {@link Counter}s, {@link Gauge}s and {@link LatencyHistogram}s.
+ * <p>
+ * Metrics are registered once, usually into static fields, and updated without locks or allocations.
+ * C# reads all of them at once with {@link #snapshot()}, which returns flat primitive arrays, or with
+ * {@link #snapshotValues()}, which returns only the values, as one {@code long[]}, and only has to be
+ * followed by {@link #snapshot()} when the layout version in it changes.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class Metrics {
+    public static final int KIND_COUNTER = 0, KIND_GAUGE = 1, KIND_HISTOGRAM = 2;
+
+    /** Layout of all registered metrics and their values at the time of the snapshot. */
+    public static final class Snapshot {
+        /** Changes every time a metric is registered. */
+        public final int version;
+        public final String[] names;
+        /** {@code KIND_*} of every metric. */
+        public final int[] kinds;
+        /** Index of the first value of every metric in {@link #values}. */
+        public final int[] offsets;
+        /**
+         * One value for counters and gauges, [count, sum of nanoseconds, max nanoseconds,
+         * {@link LatencyHistogram#BUCKET_COUNT} bucket counts] for histograms.
+         */
+        public final long[] values;
+
+        Snapshot(int version, String[] names, int[] kinds, int[] offsets, long[] values) {
+            this.version = version;
+            this.names = names;
+            this.kinds = kinds;
+            this.offsets = offsets;
+            this.values = values;
+        }
+    }
+
+    private static final class Layout {
+        final int version;
+        final Metric[] metrics;
+        final String[] names;
+        final int[] kinds, offsets;
+        final int valueCount;
+
+        Layout(int version, Metric[] metrics) {
+            this.version = version;
+            this.metrics = metrics;
+            names = new String[metrics.length];
+            kinds = new int[metrics.length];
+            offsets = new int[metrics.length];
+            int offset = 0;
+            for (int idx = 0; idx < metrics.length; idx++) {
+                names[idx] = metrics[idx].name;
+                kinds[idx] = metrics[idx].kind();
+                offsets[idx] = offset;
+                offset += metrics[idx].valueCount();
+            }
+            valueCount = offset;
+        }
+    }
+
+    // Guarded by byName, layout is replaced on every registration.
+    private static final HashMap<String, Metric> byName = new HashMap<>();
+    private static volatile Layout layout = new Layout(0, new Metric[0]);
+
+    private Metrics() {}
+
+    public static Counter counter(String name) {
+        return register(name, Counter.class);
+    }
+
+    public static Gauge gauge(String name) {
+        return register(name, Gauge.class);
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return register(name, LatencyHistogram.class);
+    }
+
+    /** Returns the existing metric if one with this name is already registered. */
+    private static <M extends Metric> M register(String name, Class<M> type) {
+        synchronized (byName) {
+            Metric existing = byName.get(name);
+            if (existing != null) {
+                if (!type.isInstance(existing)) throw new IllegalArgumentException(
+                    "metric '" + name + "' is already registered as " + existing.getClass().getSimpleName()
+                );
+                return type.cast(existing);
+            }
+
+            Metric metric;
+            if (type == Counter.class) metric = new Counter(name);
+            else if (type == Gauge.class) metric = new Gauge(name);
+            else metric = new LatencyHistogram(name);
+            byName.put(name, metric);
+
+            Layout current = layout;
+            Metric[] metrics = new Metric[current.metrics.length + 1];
+            System.arraycopy(current.metrics, 0, metrics, 0, current.metrics.length);
+            metrics[current.metrics.length] = metric;
+            layout = new Layout(current.version + 1, metrics);
+            return type.cast(metric);
+        }
+    }
+
+    public static int version() { return layout.version; }
+
+    /** Number of values {@link #snapshotValues()} returns after the version. */
+    public static int valueCount() { return layout.valueCount; }
+
+    public static Snapshot snapshot() {
+        Layout current = layout;
+        long[] values = new long[current.valueCount];
+        write(current, values);
+        return new Snapshot(current.version, current.names, current.kinds, current.offsets, values);
+    }
+
+    /**
+     * Values of all metrics. Returned instead of written into an array given by the caller, because
+     * Unity's {@code CallStatic} does not copy arrays back into C#.
+     *
+     * @return the layout version followed by the values laid out as {@link Snapshot#values}.
+     */
+    public static long[] snapshotValues() {
+        Layout current = layout;
+        long[] values = new long[current.valueCount + 1];
+        values[0] = current.version;
+        write(current, values, 1);
+        return values;
+    }
+
+    private static void write(Layout layout, long[] values) {
+        write(layout, values, 0);
+    }
+
+    private static void write(Layout layout, long[] values, int offset) {
+        for (int idx = 0; idx < layout.metrics.length; idx++) {
+            layout.metrics[idx].writeTo(values, offset + layout.offsets[idx]);
+        }
+    }
+}
@@ -7,30 +7,76 @@ import android.content.SharedPreferences;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
-import android.util.Log;
 import fp_csharp_unity.unity.Tag;
+import fp_csharp_unity.unity.logging.Log;
+import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @SuppressWarnings("WeakerAccess")
 public class InstallReferrerReceiver extends BroadcastReceiver {
     public static final String PREF_REFERRER = "referrer";
+    public static final String PREF_REFERRER_RECEIVED_AT = "referrer_received_at";
+    public static final String PREF_REFERRER_PROXY_COUNT = "referrer_proxy_count";
     static final String TAG = "FPCSharpUnity";
 
+    // The system kills receivers that take more than 10 seconds after goAsync().
+    static final long PROXY_TIMEOUT_MILLIS = 8000;
+
+    // Constructors of the proxy receivers declared in the manifest meta-data.
+    // Discovered once per process, as the manifest can't change while the app runs.
+    private static volatile List<Constructor<? extends BroadcastReceiver>> proxyConstructors;
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "FPCSharpUnity-InstallReferrer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     public static SharedPreferences getPrefs(Context context) {
         return context.getSharedPreferences("FPCSharpUnity_InstallReferrerReceiver", Context.MODE_PRIVATE);
     }
 
     @Override
-    public void onReceive(Context context, Intent intent) {
-        broadcastEvent(context, intent);
+    public void onReceive(Context context, final Intent intent) {
+        final Context appContext = context.getApplicationContext();
+        final PendingResult pendingResult = goAsync();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    handle(appContext, intent);
+                }
+                finally {
+                    if (pendingResult != null) pendingResult.finish();
+                }
+            }
+        });
+    }
+
+    private static void handle(Context context, Intent intent) {
+        int proxyCount = broadcastEvent(context, intent);
 
         String referrer = intent.getStringExtra("referrer");
-        Log.d(Tag.TAG, "InstallReferrerReceiver=" + referrer);
+        Log.log(Log.DEBUG, Tag.TAG, "InstallReferrerReceiver={}", referrer);
 
         SharedPreferences prefs = getPrefs(context);
         SharedPreferences.Editor editor = prefs.edit();
         editor.putString(PREF_REFERRER, referrer);
+        editor.putLong(PREF_REFERRER_RECEIVED_AT, System.currentTimeMillis());
+        editor.putInt(PREF_REFERRER_PROXY_COUNT, proxyCount);
         editor.apply();
     }
 
@@ -38,22 +84,64 @@ public class InstallReferrerReceiver extends BroadcastReceiver {
     // Add this to your manifest to call other receivers
     // <meta-data android:name="com.yourpackage.yourclass" android:value="FPCSharpUnityInstallReferrerReceiver"/>
 
-    private void broadcastEvent(Context context, Intent intent) {
-        List<BroadcastReceiver> proxyClasses = getBroadcastReceivers(context, "FPCSharpUnityInstallReferrerReceiver");
+    /**
+     * Calls all proxy receivers concurrently and waits for them, bounded by {@link #PROXY_TIMEOUT_MILLIS}.
+     *
+     * @return number of proxy receivers that were called.
+     */
+    private static int broadcastEvent(final Context context, final Intent intent) {
+        List<Constructor<? extends BroadcastReceiver>> constructors = getProxyConstructors(context);
+        if (constructors.isEmpty()) return 0;
 
-        for (BroadcastReceiver r : proxyClasses) {
-            try {
-                r.onReceive(context, intent);
-                Log.i(TAG, "Called onReceive on: " + r.getClass().getName());
-            }
-            catch (Exception e) {
-                Log.e(TAG, "Exception calling onReceive: " + e.getMessage());
-            }
+        final CountDownLatch done = new CountDownLatch(constructors.size());
+        for (final Constructor<? extends BroadcastReceiver> constructor : constructors) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        BroadcastReceiver r = constructor.newInstance();
+                        r.onReceive(context, intent);
+                        Log.log(Log.INFO, TAG, "Called onReceive on: {}", r.getClass().getName());
+                    }
+                    catch (Exception e) {
+                        Log.log(Log.ERROR, TAG, "Exception calling onReceive on {}: {}", constructor.getDeclaringClass().getName(), e.getMessage());
+                    }
+                    finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        try {
+            if (!done.await(PROXY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+                Log.log(Log.WARN, TAG, "Not all referrer receivers finished in {}ms", PROXY_TIMEOUT_MILLIS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        return constructors.size();
     }
 
-    private List<BroadcastReceiver> getBroadcastReceivers(Context context, String name) {
-        List<BroadcastReceiver> receivers = new ArrayList<BroadcastReceiver>();
+    /** Discovers the proxy receivers ahead of the referrer broadcast, see {@code PluginInitializer}. */
+    public static void prewarm(Context context) {
+        getProxyConstructors(context.getApplicationContext());
+    }
+
+    /** Discovers the proxy receivers on the first call and returns the cached result afterwards. */
+    static List<Constructor<? extends BroadcastReceiver>> getProxyConstructors(Context context) {
+        List<Constructor<? extends BroadcastReceiver>> constructors = proxyConstructors;
+        if (constructors == null) {
+            constructors = Collections.unmodifiableList(
+                findProxyConstructors(context, "FPCSharpUnityInstallReferrerReceiver")
+            );
+            proxyConstructors = constructors;
+        }
+        return constructors;
+    }
+
+    private static List<Constructor<? extends BroadcastReceiver>> findProxyConstructors(Context context, String name) {
+        List<Constructor<? extends BroadcastReceiver>> receivers = new ArrayList<>();
         try {
             ApplicationInfo ai =
                     context.getPackageManager().getApplicationInfo(
@@ -67,30 +155,34 @@ public class InstallReferrerReceiver extends BroadcastReceiver {
                         String value = (String)bundleValue;
                         if (value.equals(name)) {
                             try {
-                                Class<?> classObj = Class.forName(key);
-                                BroadcastReceiver r = (BroadcastReceiver) classObj.newInstance();
-                                receivers.add(r);
-                                Log.i(TAG, "Found referrer receiver class: " + classObj);
+                                Class<? extends BroadcastReceiver> classObj =
+                                    Class.forName(key).asSubclass(BroadcastReceiver.class);
+                                Constructor<? extends BroadcastReceiver> constructor = classObj.getConstructor();
+                                receivers.add(constructor);
+                                Log.log(Log.INFO, TAG, "Found referrer receiver class: {}", classObj);
                             }
                             catch (ClassCastException e) {
-                                Log.e(TAG, "Class is not a BroadcastReceiver: " + value);
+                                Log.log(Log.ERROR, TAG, "Class is not a BroadcastReceiver: {}", value);
                             }
                             catch (ClassNotFoundException e) {
-                                Log.e(TAG, "No referrer receiver class found: " + value);
+                                Log.log(Log.ERROR, TAG, "No referrer receiver class found: {}", value);
+                            }
+                            catch (NoSuchMethodException e) {
+                                Log.log(Log.ERROR, TAG, "Referrer receiver class has no public no-arg constructor: {}", key);
                             }
                         }
                     }
                 }
                 catch (Exception e) {
-                    Log.e(TAG, "Exception: " + e.getMessage());
+                    Log.log(Log.ERROR, TAG, "Exception: {}", e.getMessage());
                 }
             }
         }
         catch (PackageManager.NameNotFoundException e) {
-            Log.e(TAG, "Failed to load meta-data, NameNotFound: " + e.getMessage());
+            Log.log(Log.ERROR, TAG, "Failed to load meta-data, NameNotFound: {}", e.getMessage());
         }
         catch (NullPointerException e) {
-            Log.e(TAG, "Failed to load meta-data, NullPointer: " + e.getMessage());
+            Log.log(Log.ERROR, TAG, "Failed to load meta-data, NullPointer: {}", e.getMessage());
         }
         return receivers;
     }
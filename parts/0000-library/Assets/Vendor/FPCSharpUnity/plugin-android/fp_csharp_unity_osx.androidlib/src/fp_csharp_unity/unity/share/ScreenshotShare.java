@@ -0,0 +1,236 @@
+package fp_csharp_unity.unity.share;
+
+import android.app.Activity;
+import android.content.ClipData;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import fp_csharp_unity.unity.fns.Act1;
+import fp_csharp_unity.unity.logging.Log;
+import fp_csharp_unity.unity.util.FileCaches;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shares screenshots through {@link ShareProvider}.
+ * <p>
+ * {@link #sharePixels} only copies the raw pixels on the calling thread. Encoding to PNG happens on
+ * a background thread into a reused {@link Bitmap}, the result is written into a cache directory
+ * kept under {@link #setMaxBytes(long)} and the chooser is started on the main thread.
+ * <p>
+ * One share is prepared at a time, so the staging buffer and the bitmap can be reused.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class ScreenshotShare {
+  static final String TAG = "FPCSharpUnity-ScreenshotShare";
+  static final String DIR_NAME = "fp_csharp_unity_share";
+  static final int BYTES_PER_PIXEL = 4;
+
+  private static volatile long maxBytes = 20 * 1024 * 1024;
+
+  private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "FPCSharpUnity-ScreenshotShare");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+  private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  // Set while a share is being prepared, guards staging and bitmap.
+  private static final AtomicBoolean busy = new AtomicBoolean();
+  // Keeps file names unique within a millisecond, a chooser target may still read an older file.
+  private static final AtomicInteger fileCounter = new AtomicInteger();
+  private static ByteBuffer staging;
+  private static Bitmap bitmap;
+
+  public static void setMaxBytes(long maxBytes) { ScreenshotShare.maxBytes = maxBytes; }
+
+  static File shareDir(Context context) {
+    return new File(context.getCacheDir(), DIR_NAME);
+  }
+
+  /**
+   * Shares RGBA pixels as a PNG.
+   *
+   * @param pixels {@code width * height * 4} bytes of RGBA pixels, starting at its position. It is
+   *               only read during this call.
+   * @param flipVertically whether rows go from the bottom to the top, like the results of
+   *                       {@code Texture2D.ReadPixels} and {@code AsyncGPUReadback}.
+   * @param onChooserReady called on the main thread with true once the chooser is started or false
+   *                       if the share failed. Can be null.
+   * @return false if another share is still being prepared, in which case nothing happens.
+   */
+  public static boolean sharePixels(
+    final Activity activity, ByteBuffer pixels, final int width, final int height, boolean flipVertically,
+    final String title, final String sharerText, final Act1<Boolean> onChooserReady
+  ) {
+    if (width <= 0 || height <= 0) throw new IllegalArgumentException(
+      "width (" + width + ") and height (" + height + ") must be positive"
+    );
+    long longByteCount = (long) width * height * BYTES_PER_PIXEL;
+    if (pixels.remaining() < longByteCount) throw new IllegalArgumentException(
+      "pixels size (" + pixels.remaining() + ") != width * height * 4 (" + longByteCount + ")"
+    );
+    // remaining() is an int, so this fits now.
+    final int rowBytes = width * BYTES_PER_PIXEL, byteCount = (int) longByteCount;
+    if (!busy.compareAndSet(false, true)) {
+      Log.log(Log.WARN, TAG, "Another share is still being prepared, ignoring sharePixels");
+      return false;
+    }
+
+    // Nothing else resets busy if the copy or the hand-off throws.
+    try {
+      copyToStaging(pixels, height, rowBytes, byteCount, flipVertically);
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          File file;
+          try {
+            file = encode(activity, width, height);
+          } catch (IOException | RuntimeException e) {
+            Log.log(Log.ERROR, TAG, "Failed to encode the screenshot", e);
+            file = null;
+          } finally {
+            busy.set(false);
+          }
+          startChooser(activity, file, title, sharerText, onChooserReady);
+        }
+      });
+    } catch (RuntimeException | Error e) {
+      busy.set(false);
+      throw e;
+    }
+    return true;
+  }
+
+  private static void copyToStaging(
+    ByteBuffer pixels, int height, int rowBytes, int byteCount, boolean flipVertically
+  ) {
+    if (staging == null || staging.capacity() < byteCount) staging = ByteBuffer.allocateDirect(byteCount);
+    staging.clear();
+    int start = pixels.position();
+    if (flipVertically) {
+      ByteBuffer row = pixels.duplicate();
+      for (int y = height - 1; y >= 0; y--) {
+        int rowStart = start + y * rowBytes;
+        row.limit(rowStart + rowBytes).position(rowStart);
+        staging.put(row);
+      }
+    }
+    else {
+      ByteBuffer source = pixels.duplicate();
+      source.limit(start + byteCount);
+      staging.put(source);
+    }
+    staging.flip();
+  }
+
+  /** Shares an already encoded PNG, copying it into the share cache in the background first. */
+  public static void shareFile(
+    final Activity activity, final File png, final String title, final String sharerText,
+    final Act1<Boolean> onChooserReady
+  ) {
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        File file;
+        try {
+          file = copyToShareDir(activity, png);
+        } catch (IOException e) {
+          Log.log(Log.ERROR, TAG, "Failed to copy [{}] for sharing", png, e);
+          file = null;
+        }
+        startChooser(activity, file, title, sharerText, onChooserReady);
+      }
+    });
+  }
+
+  private static File encode(Context context, int width, int height) throws IOException {
+    if (bitmap == null || bitmap.isRecycled() || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+      if (bitmap != null) bitmap.recycle();
+      bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+      // Unity gives straight alpha, a premultiplied bitmap would get wrong colours where alpha < 255.
+      bitmap.setPremultiplied(false);
+    }
+    bitmap.copyPixelsFromBuffer(staging);
+
+    File file = newShareFile(context);
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024)) {
+      if (!bitmap.compress(Bitmap.CompressFormat.PNG, 100, out))
+        throw new IOException("Bitmap.compress failed for " + file);
+    } catch (IOException e) {
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+      throw e;
+    }
+    FileCaches.trim(file.getParentFile(), maxBytes, file);
+    return file;
+  }
+
+  private static File copyToShareDir(Context context, File png) throws IOException {
+    File file = newShareFile(context);
+    try (
+      FileInputStream input = new FileInputStream(png);
+      FileOutputStream output = new FileOutputStream(file);
+      FileChannel source = input.getChannel();
+      FileChannel target = output.getChannel()
+    ) {
+      long size = source.size();
+      for (long position = 0; position < size; ) position += source.transferTo(position, size - position, target);
+    }
+    FileCaches.trim(file.getParentFile(), maxBytes, file);
+    return file;
+  }
+
+  private static File newShareFile(Context context) throws IOException {
+    File dir = shareDir(context);
+    if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Can't create " + dir);
+    return new File(dir, "screenshot-" + System.currentTimeMillis() + "-" + fileCounter.incrementAndGet() + ".png");
+  }
+
+  private static void startChooser(
+    final Activity activity, final File file, final String title, final String sharerText,
+    final Act1<Boolean> onChooserReady
+  ) {
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        boolean started = false;
+        if (file != null) {
+          try {
+            Uri uri = ShareProvider.uriFor(activity, file);
+            Intent shareIntent = new Intent();
+            shareIntent.setAction(Intent.ACTION_SEND);
+            shareIntent.putExtra(Intent.EXTRA_TEXT, sharerText);
+            shareIntent.putExtra(Intent.EXTRA_STREAM, uri);
+            shareIntent.setType("image/png");
+            // Grants the read permission to the chosen app as well, not only to the chooser.
+            shareIntent.setClipData(ClipData.newRawUri(null, uri));
+            shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            activity.startActivity(Intent.createChooser(shareIntent, title));
+            started = true;
+          } catch (RuntimeException e) {
+            Log.log(Log.ERROR, TAG, "Failed to start the share chooser", e);
+          }
+        }
+        if (onChooserReady != null) onChooserReady.run(started);
+      }
+    });
+  }
+}
@@ -0,0 +1,97 @@
+package fp_csharp_unity.unity.share;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.List;
+
+/**
+ * Read-only provider for the files in {@link ScreenshotShare#shareDir(Context)}, so they can be
+ * shared with {@code content://} URIs instead of {@code file://} ones, which newer Android versions
+ * reject. Only serves files directly in that directory.
+ * <p>
+ * Registered in the manifest with the {@code ${applicationId}.fp_csharp_unity.share} authority.
+ */
+public class ShareProvider extends ContentProvider {
+  static final String AUTHORITY_SUFFIX = ".fp_csharp_unity.share";
+
+  static String authority(Context context) {
+    return context.getPackageName() + AUTHORITY_SUFFIX;
+  }
+
+  static Uri uriFor(Context context, File file) {
+    return new Uri.Builder()
+      .scheme("content")
+      .authority(authority(context))
+      .appendPath(file.getName())
+      .build();
+  }
+
+  @Override
+  public boolean onCreate() { return true; }
+
+  private File fileFor(Uri uri) throws FileNotFoundException {
+    List<String> segments = uri.getPathSegments();
+    if (segments.size() != 1) throw new FileNotFoundException("Unknown uri " + uri);
+    String name = segments.get(0);
+    if (name.isEmpty() || name.equals(".") || name.equals("..") || name.indexOf('/') != -1)
+      throw new FileNotFoundException("Unknown uri " + uri);
+    File file = new File(ScreenshotShare.shareDir(getContext()), name);
+    if (!file.isFile()) throw new FileNotFoundException("No file for " + uri);
+    return file;
+  }
+
+  @Override
+  public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+    if (!"r".equals(mode)) throw new SecurityException("Only reading is supported, got mode " + mode);
+    return ParcelFileDescriptor.open(fileFor(uri), ParcelFileDescriptor.MODE_READ_ONLY);
+  }
+
+  @Override
+  public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+    File file;
+    try {
+      file = fileFor(uri);
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+
+    if (projection == null) projection = new String[] { OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE };
+    Object[] row = new Object[projection.length];
+    for (int idx = 0; idx < projection.length; idx++) {
+      if (OpenableColumns.DISPLAY_NAME.equals(projection[idx])) row[idx] = file.getName();
+      else if (OpenableColumns.SIZE.equals(projection[idx])) row[idx] = file.length();
+    }
+    MatrixCursor cursor = new MatrixCursor(projection, 1);
+    cursor.addRow(row);
+    return cursor;
+  }
+
+  @Override
+  public String getType(Uri uri) {
+    String name = uri.getLastPathSegment();
+    return name != null && name.endsWith(".png") ? "image/png" : "application/octet-stream";
+  }
+
+  @Override
+  public Uri insert(Uri uri, ContentValues values) {
+    throw new UnsupportedOperationException("ShareProvider is read-only");
+  }
+
+  @Override
+  public int delete(Uri uri, String selection, String[] selectionArgs) {
+    throw new UnsupportedOperationException("ShareProvider is read-only");
+  }
+
+  @Override
+  public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+    throw new UnsupportedOperationException("ShareProvider is read-only");
+  }
+}
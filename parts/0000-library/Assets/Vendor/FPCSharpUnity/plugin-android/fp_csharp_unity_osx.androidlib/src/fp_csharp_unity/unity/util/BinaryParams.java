@@ -0,0 +1,285 @@
+package fp_csharp_unity.unity.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parameters that C# writes into a reused direct buffer, an alternative to {@link GCFreeHashMap}
+ * that needs no Java objects per entry.
+ * <p>
+ * Keys are interned once with {@link #internKey(String)} and referred to by id afterwards. The
+ * buffer holds native order values:
+ * <pre>
+ * int entryCount
+ * entryCount times: int keyId, byte type, value
+ * </pre>
+ * where the value is nothing for {@link #TYPE_NULL}, one byte (0 or 1) for {@link #TYPE_BOOLEAN},
+ * an int, long or double for {@link #TYPE_INT}, {@link #TYPE_LONG} and {@link #TYPE_DOUBLE}, and
+ * an int byte length followed by UTF-8 bytes for {@link #TYPE_STRING}.
+ * <p>
+ * {@link #read(int)} only indexes the entries. Values are read from the buffer on lookup, so only
+ * strings allocate. {@link #toHashMap()} builds a map for SDKs that need one. Not thread safe.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class BinaryParams {
+    public static final byte
+        TYPE_NULL = 0,
+        TYPE_BOOLEAN = 1,
+        TYPE_INT = 2,
+        TYPE_LONG = 3,
+        TYPE_DOUBLE = 4,
+        TYPE_STRING = 5;
+
+    // Interned keys, shared by all instances. keyNames is copy-on-write, indexed by key id.
+    private static final ConcurrentHashMap<String, Integer> keyIds = new ConcurrentHashMap<>();
+    private static volatile String[] keyNames = new String[0];
+
+    /** @return id of the key, the same one for every call with an equal key. */
+    public static int internKey(String key) {
+        Integer id = keyIds.get(key);
+        if (id != null) return id;
+        synchronized (keyIds) {
+            id = keyIds.get(key);
+            if (id != null) return id;
+            String[] names = keyNames;
+            String[] updated = Arrays.copyOf(names, names.length + 1);
+            updated[names.length] = key;
+            keyNames = updated;
+            keyIds.put(key, names.length);
+            return names.length;
+        }
+    }
+
+    /** @return interned key for the id, or null if there is no such id. */
+    public static String keyName(int keyId) {
+        String[] names = keyNames;
+        return keyId >= 0 && keyId < names.length ? names[keyId] : null;
+    }
+
+    private final ByteBuffer buffer;
+    // Shares the content of buffer, for bulk reads that need a position.
+    private final ByteBuffer bulkReader;
+
+    // Entries of the last read, in buffer order.
+    private int size;
+    private int[] entryKeys = new int[16], entryOffsets = new int[16];
+    private byte[] entryTypes = new byte[16];
+
+    // Entry index for every key id, valid when the stamp matches the current read.
+    private int[] entryByKey = new int[16], stampByKey = new int[16];
+    private int stamp;
+
+    // Scratch space for decoding strings.
+    private byte[] stringBytes = new byte[64];
+
+    public BinaryParams(int capacityBytes) {
+        buffer = ByteBuffer.allocateDirect(capacityBytes).order(ByteOrder.nativeOrder());
+        bulkReader = buffer.duplicate();
+    }
+
+    /** Buffer C# writes the parameters into. */
+    public ByteBuffer buffer() { return buffer; }
+
+    /**
+     * Indexes the entries in the first {@code byteCount} bytes of {@link #buffer()}. Later entries
+     * replace earlier ones with the same key.
+     *
+     * @throws IllegalArgumentException if the data is malformed.
+     */
+    public BinaryParams read(int byteCount) {
+        if (byteCount < 4 || byteCount > buffer.capacity()) throw new IllegalArgumentException(
+            "byteCount (" + byteCount + ") must be between 4 and " + buffer.capacity()
+        );
+        size = 0;
+        if (++stamp == 0) {
+            Arrays.fill(stampByKey, 0);
+            stamp = 1;
+        }
+
+        int count = buffer.getInt(0);
+        if (count < 0) throw new IllegalArgumentException("Negative entry count " + count);
+        int offset = 4;
+        for (int idx = 0; idx < count; idx++) {
+            if (offset + 5 > byteCount) throw malformed(idx, offset);
+            int keyId = buffer.getInt(offset);
+            byte type = buffer.get(offset + 4);
+            // Only interned ids, so a corrupt id can not grow the per-key tables to its value.
+            if (keyId < 0 || keyId >= keyNames.length)
+                throw new IllegalArgumentException("Unknown key id " + keyId + " in entry " + idx);
+            int valueOffset = offset + 5;
+            int valueSize;
+            switch (type) {
+                case TYPE_NULL: valueSize = 0; break;
+                case TYPE_BOOLEAN: valueSize = 1; break;
+                case TYPE_INT: valueSize = 4; break;
+                case TYPE_LONG: case TYPE_DOUBLE: valueSize = 8; break;
+                case TYPE_STRING:
+                    if (valueOffset + 4 > byteCount) throw malformed(idx, offset);
+                    int length = buffer.getInt(valueOffset);
+                    // Compared this way round, 4 + length could overflow.
+                    if (length < 0 || length > byteCount - valueOffset - 4) throw malformed(idx, offset);
+                    valueSize = 4 + length;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown type " + type + " in entry " + idx);
+            }
+            if (valueOffset + valueSize > byteCount) throw malformed(idx, offset);
+            add(keyId, type, valueOffset);
+            offset = valueOffset + valueSize;
+        }
+        return this;
+    }
+
+    private static IllegalArgumentException malformed(int entry, int offset) {
+        return new IllegalArgumentException("Entry " + entry + " at byte " + offset + " runs past the data");
+    }
+
+    private void add(int keyId, byte type, int valueOffset) {
+        if (keyId >= entryByKey.length) {
+            int length = Math.max(entryByKey.length * 2, keyId + 1);
+            entryByKey = Arrays.copyOf(entryByKey, length);
+            stampByKey = Arrays.copyOf(stampByKey, length);
+        }
+        int entry;
+        if (stampByKey[keyId] == stamp) entry = entryByKey[keyId];
+        else {
+            if (size == entryKeys.length) {
+                entryKeys = Arrays.copyOf(entryKeys, size * 2);
+                entryOffsets = Arrays.copyOf(entryOffsets, size * 2);
+                entryTypes = Arrays.copyOf(entryTypes, size * 2);
+            }
+            entry = size++;
+            stampByKey[keyId] = stamp;
+            entryByKey[keyId] = entry;
+        }
+        entryKeys[entry] = keyId;
+        entryOffsets[entry] = valueOffset;
+        entryTypes[entry] = type;
+    }
+
+    /** Number of distinct keys in the last read. */
+    public int size() { return size; }
+
+    public int keyIdAt(int entry) { return entryKeys[entry]; }
+    public byte typeAt(int entry) { return entryTypes[entry]; }
+
+    /** @return entry index of the key in the last read, or -1. */
+    public int entryOf(int keyId) {
+        return keyId >= 0 && keyId < stampByKey.length && stampByKey[keyId] == stamp ? entryByKey[keyId] : -1;
+    }
+
+    /** @return entry index of the key in the last read, or -1. */
+    public int entryOf(String key) {
+        Integer keyId = keyIds.get(key);
+        return keyId == null ? -1 : entryOf(keyId);
+    }
+
+    public boolean contains(int keyId) { return entryOf(keyId) != -1; }
+
+    /** @return type of the value, or -1 if the key is missing. */
+    public int type(int keyId) {
+        int entry = entryOf(keyId);
+        return entry == -1 ? -1 : entryTypes[entry];
+    }
+
+    public boolean getBoolean(int keyId, boolean defaultValue) {
+        int entry = entryOf(keyId);
+        return entry != -1 && entryTypes[entry] == TYPE_BOOLEAN
+            ? buffer.get(entryOffsets[entry]) != 0 : defaultValue;
+    }
+
+    public int getInt(int keyId, int defaultValue) {
+        int entry = entryOf(keyId);
+        return entry != -1 && entryTypes[entry] == TYPE_INT ? buffer.getInt(entryOffsets[entry]) : defaultValue;
+    }
+
+    /** Also reads {@link #TYPE_INT} values. */
+    public long getLong(int keyId, long defaultValue) {
+        int entry = entryOf(keyId);
+        if (entry == -1) return defaultValue;
+        switch (entryTypes[entry]) {
+            case TYPE_LONG: return buffer.getLong(entryOffsets[entry]);
+            case TYPE_INT: return buffer.getInt(entryOffsets[entry]);
+            default: return defaultValue;
+        }
+    }
+
+    public double getDouble(int keyId, double defaultValue) {
+        int entry = entryOf(keyId);
+        return entry != -1 && entryTypes[entry] == TYPE_DOUBLE
+            ? buffer.getDouble(entryOffsets[entry]) : defaultValue;
+    }
+
+    /** Decodes a {@link #TYPE_STRING} value, allocating the string. */
+    public String getString(int keyId, String defaultValue) {
+        int entry = entryOf(keyId);
+        return entry != -1 && entryTypes[entry] == TYPE_STRING ? stringAt(entryOffsets[entry]) : defaultValue;
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Integer keyId = keyIds.get(key);
+        return keyId == null ? defaultValue : getBoolean(keyId, defaultValue);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        Integer keyId = keyIds.get(key);
+        return keyId == null ? defaultValue : getInt(keyId, defaultValue);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        Integer keyId = keyIds.get(key);
+        return keyId == null ? defaultValue : getLong(keyId, defaultValue);
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        Integer keyId = keyIds.get(key);
+        return keyId == null ? defaultValue : getDouble(keyId, defaultValue);
+    }
+
+    public String getString(String key, String defaultValue) {
+        Integer keyId = keyIds.get(key);
+        return keyId == null ? defaultValue : getString(keyId, defaultValue);
+    }
+
+    /** Value of the entry boxed into Boolean, Integer, Long, Double, String or null. */
+    public Object valueAt(int entry) {
+        int offset = entryOffsets[entry];
+        switch (entryTypes[entry]) {
+            case TYPE_BOOLEAN: return buffer.get(offset) != 0;
+            case TYPE_INT: return buffer.getInt(offset);
+            case TYPE_LONG: return buffer.getLong(offset);
+            case TYPE_DOUBLE: return buffer.getDouble(offset);
+            case TYPE_STRING: return stringAt(offset);
+            default: return null;
+        }
+    }
+
+    /** Entries of the last read with boxed values, see {@link #valueAt(int)}. */
+    public HashMap<String, Object> toHashMap() {
+        HashMap<String, Object> map = new HashMap<>(size * 4 / 3 + 1);
+        for (int entry = 0; entry < size; entry++) map.put(keyName(entryKeys[entry]), valueAt(entry));
+        return map;
+    }
+
+    /** Entries of the last read with values converted by {@link String#valueOf(Object)}. */
+    public HashMap<String, String> toStringHashMap() {
+        HashMap<String, String> map = new HashMap<>(size * 4 / 3 + 1);
+        for (int entry = 0; entry < size; entry++) {
+            Object value = valueAt(entry);
+            map.put(keyName(entryKeys[entry]), value == null ? null : String.valueOf(value));
+        }
+        return map;
+    }
+
+    private String stringAt(int offset) {
+        int length = buffer.getInt(offset);
+        if (length > stringBytes.length) stringBytes = new byte[Math.max(length, stringBytes.length * 2)];
+        bulkReader.position(offset + 4);
+        bulkReader.get(stringBytes, 0, length);
+        return new String(stringBytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+package fp_csharp_unity.unity.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free sequencer for a bounded multi-producer, single-consumer ring buffer.
+ * <p>
+ * Only hands out slot indexes - the owner keeps the actual data in preallocated arrays of the same
+ * capacity, so publishing an element does not allocate.
+ * <p>
+ * Producers: {@link #tryClaim()}, write the slot at {@link #index(long)}, {@link #publish(long)}.
+ * <br>
+ * Consumer: {@link #tryPeek()}, read the slot at {@link #index(long)}, {@link #release(long)}.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class BoundedMpscSequencer {
+    public final int capacity;
+    private final int mask;
+    // For slot i: == position when it is free to be claimed at that position,
+    // == position + 1 when it is published for that position.
+    private final AtomicLongArray sequences;
+    private final AtomicLong producerPosition = new AtomicLong();
+    private volatile long consumerPosition;
+
+    /** @param capacity rounded up to the next power of two. */
+    public BoundedMpscSequencer(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive, was " + capacity);
+        int actual = Integer.highestOneBit(capacity);
+        if (actual < capacity) actual <<= 1;
+        this.capacity = actual;
+        mask = actual - 1;
+        sequences = new AtomicLongArray(actual);
+        for (int idx = 0; idx < actual; idx++) sequences.set(idx, idx);
+    }
+
+    public int index(long position) { return (int) (position & mask); }
+
+    /** @return claimed position or -1 if the ring is full. */
+    public long tryClaim() {
+        while (true) {
+            long position = producerPosition.get();
+            long diff = sequences.get(index(position)) - position;
+            if (diff == 0) {
+                if (producerPosition.compareAndSet(position, position + 1)) return position;
+            }
+            else if (diff < 0) return -1;
+            // Otherwise another producer got this position first, retry with the next one.
+        }
+    }
+
+    public void publish(long position) { sequences.lazySet(index(position), position + 1); }
+
+    /** Consumer only. @return next published position or -1 if nothing is published yet. */
+    public long tryPeek() {
+        long position = consumerPosition;
+        return sequences.get(index(position)) == position + 1 ? position : -1;
+    }
+
+    /** Consumer only. Hands the slot of a peeked position back to producers. */
+    public void release(long position) {
+        sequences.lazySet(index(position), position + capacity);
+        consumerPosition = position + 1;
+    }
+
+    /** Number of claimed but not yet released slots. Approximate while producers are running. */
+    public int size() {
+        return (int) Math.max(0, producerPosition.get() - consumerPosition);
+    }
+}
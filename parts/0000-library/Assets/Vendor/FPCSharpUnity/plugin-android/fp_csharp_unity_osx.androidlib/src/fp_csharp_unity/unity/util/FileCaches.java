@@ -0,0 +1,38 @@
+package fp_csharp_unity.unity.util;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/** Helpers for directories used as caches. */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class FileCaches {
+    private FileCaches() {}
+
+    /**
+     * Deletes least recently modified files until the directory fits into {@code maxBytes}.
+     *
+     * @param keep file that is never deleted, can be null.
+     */
+    public static void trim(File dir, long maxBytes, File keep) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+
+        long total = 0;
+        for (File f : files) total += f.length();
+        if (total <= maxBytes) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File f : files) {
+            if (total <= maxBytes) break;
+            if (f.equals(keep)) continue;
+            long length = f.length();
+            if (f.delete()) total -= length;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package fp_csharp_unity.unity.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing (linear probing) table that maps hashes to indexes of externally owned key arrays.
+ * <p>
+ * Slots store {@code index + 1}, so 0 marks an empty slot. The table is only reallocated when it
+ * has to grow, which makes reindexing the next payload of similar size allocation free.
+ */
+final class FlatHashIndex {
+    private static final int[] EMPTY = new int[0];
+
+    int[] slots = EMPTY;
+    int mask = -1;
+
+    /** Clears the table and makes sure it can hold {@code size} keys with a load factor of at most 0.5. */
+    void reset(int size) {
+        int required = Integer.highestOneBit(Math.max(1, size)) << 2;
+        if (slots.length < required) {
+            slots = new int[required];
+        }
+        else {
+            Arrays.fill(slots, 0);
+        }
+        mask = slots.length - 1;
+    }
+
+    static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -8,12 +8,46 @@ public class GCFreeHashMap<K, V> {
     @SuppressWarnings("WeakerAccess")
     public final HashMap<K, V> map;
 
+    // Pool this instance returns to on release(), null if it is not pooled.
+    private final GCFreeHashMapPool<K, V> pool;
+    // Whether the map was acquired and not released yet. Guarded by the pool's lock.
+    boolean leased;
+
     public GCFreeHashMap(K[] keys, V[] values) {
+        pool = null;
+        map = new HashMap<>(keys.length);
+        fill(keys, values);
+    }
+
+    GCFreeHashMap(GCFreeHashMapPool<K, V> pool, int initialCapacity) {
+        this.pool = pool;
+        map = new HashMap<>(initialCapacity);
+    }
+
+    /**
+     * Takes a map from {@link GCFreeHashMapPool#shared} filled with the given entries.
+     * Call {@link #release()} once the map is not used anymore.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> GCFreeHashMap<K, V> acquire(K[] keys, V[] values) {
+        return ((GCFreeHashMapPool<K, V>) GCFreeHashMapPool.shared).acquire(keys, values);
+    }
+
+    /**
+     * Returns a pooled map back to its pool. The map must not be used after this call.
+     * Does nothing for maps that were created with the constructor.
+     *
+     * @throws IllegalStateException if the map is not acquired, e.g. it was already released.
+     */
+    public void release() {
+        if (pool != null) pool.release(this);
+    }
+
+    void fill(K[] keys, V[] values) {
         if (keys.length != values.length) throw new IllegalArgumentException(
           "keys size (" + keys.length + ") != values size (" + values.length + ")"
         );
 
-        map = new HashMap<>(keys.length);
         for (int idx = 0; idx < keys.length; idx++) {
             map.put(keys[idx], values[idx]);
         }
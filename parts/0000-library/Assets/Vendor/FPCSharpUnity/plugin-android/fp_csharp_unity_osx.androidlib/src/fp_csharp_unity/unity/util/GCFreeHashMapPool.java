@@ -0,0 +1,88 @@
+package fp_csharp_unity.unity.util;
+
+/**
+ * Bounded, thread-safe pool of {@link GCFreeHashMap}s.
+ * <p>
+ * Released maps are cleared and kept together with their backing {@link java.util.HashMap}, so once
+ * the pool warms up, sending an event from C# reuses the map and its table. The
+ * {@link java.util.HashMap} entry nodes are still allocated on every fill, about 32 bytes per
+ * entry. At most {@link #maxPooled} released maps are kept, the rest are left for the GC.
+ * <p>
+ * Every map tracks whether it is acquired, so releasing it twice throws, whether or not it went
+ * back into the pool. A second release that comes after someone else acquired the same map again
+ * can not be told apart from theirs.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class GCFreeHashMapPool<K, V> {
+    public static final GCFreeHashMapPool<Object, Object> shared = new GCFreeHashMapPool<>(32, 16);
+
+    public final int maxPooled, initialMapCapacity;
+
+    private final Object lock = new Object();
+    private final GCFreeHashMap<K, V>[] pooled;
+    private int pooledCount;
+    private long hits, misses;
+    private int inUse, highWaterMark;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public GCFreeHashMapPool(int maxPooled, int initialMapCapacity) {
+        if (maxPooled < 0) throw new IllegalArgumentException("maxPooled can't be negative, was " + maxPooled);
+        this.maxPooled = maxPooled;
+        this.initialMapCapacity = initialMapCapacity;
+        pooled = new GCFreeHashMap[maxPooled];
+    }
+
+    /** Takes a map from the pool, or creates a new one if the pool is empty, and fills it. */
+    public GCFreeHashMap<K, V> acquire(K[] keys, V[] values) {
+        GCFreeHashMap<K, V> map = null;
+        synchronized (lock) {
+            if (pooledCount != 0) {
+                pooledCount--;
+                map = pooled[pooledCount];
+                pooled[pooledCount] = null;
+                map.leased = true;
+                hits++;
+            }
+            else {
+                misses++;
+            }
+            inUse++;
+            if (inUse > highWaterMark) highWaterMark = inUse;
+        }
+
+        if (map == null) {
+            map = new GCFreeHashMap<>(this, Math.max(initialMapCapacity, keys.length));
+            synchronized (lock) {
+                map.leased = true;
+            }
+        }
+        try {
+            map.fill(keys, values);
+        }
+        catch (RuntimeException e) {
+            release(map);
+            throw e;
+        }
+        return map;
+    }
+
+    void release(GCFreeHashMap<K, V> map) {
+        synchronized (lock) {
+            if (!map.leased) throw new IllegalStateException("GCFreeHashMap was released while not acquired");
+            map.leased = false;
+            map.map.clear();
+            inUse--;
+            if (pooledCount < pooled.length) {
+                pooled[pooledCount] = map;
+                pooledCount++;
+            }
+        }
+    }
+
+    /** Pool statistics as [hits, misses, high-water mark of maps in use, maps in use, pooled maps]. */
+    public long[] stats() {
+        synchronized (lock) {
+            return new long[] { hits, misses, highWaterMark, inUse, pooledCount };
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package fp_csharp_unity.unity.util;
+
+/**
+ * int to Object map over parallel key/value arrays passed from C#. The arrays are indexed in
+ * place, without copying or boxing the keys.
+ * <p>
+ * If a key is present more than once, the last value wins, same as {@link java.util.HashMap#put}.
+ */
+@SuppressWarnings("unused")
+public class IntObjectFlatMap<V> {
+    private final FlatHashIndex index = new FlatHashIndex();
+    private int[] keys;
+    private V[] values;
+
+    @SuppressWarnings("unchecked")
+    public IntObjectFlatMap() { reset(new int[0], (V[]) new Object[0]); }
+
+    public IntObjectFlatMap(int[] keys, V[] values) { reset(keys, values); }
+
+    /** Reuses this map for another payload. The arrays are used as is, not copied. */
+    public void reset(int[] keys, V[] values) {
+        if (keys.length != values.length) throw new IllegalArgumentException(
+            "keys size (" + keys.length + ") != values size (" + values.length + ")"
+        );
+
+        this.keys = keys;
+        this.values = values;
+        index.reset(keys.length);
+        int[] slots = index.slots;
+        int mask = index.mask;
+        for (int idx = 0; idx < keys.length; idx++) {
+            int key = keys[idx];
+            int slot = FlatHashIndex.mix(key) & mask;
+            while (true) {
+                int existing = slots[slot];
+                if (existing == 0 || keys[existing - 1] == key) {
+                    slots[slot] = idx + 1;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+
+    /** @return index of the key in the keys array or -1 if it is not present. */
+    public int indexOf(int key) {
+        int[] slots = index.slots;
+        int mask = index.mask;
+        int slot = FlatHashIndex.mix(key) & mask;
+        while (true) {
+            int existing = slots[slot];
+            if (existing == 0) return -1;
+            if (keys[existing - 1] == key) return existing - 1;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public boolean containsKey(int key) { return indexOf(key) != -1; }
+
+    /** @return the value or null if the key is not present. */
+    public V get(int key) {
+        int idx = indexOf(key);
+        return idx == -1 ? null : values[idx];
+    }
+
+    /** Number of entries in the backing arrays, including overridden duplicate keys. */
+    public int size() { return keys.length; }
+
+    public int keyAt(int index) { return keys[index]; }
+
+    public V valueAt(int index) { return values[index]; }
+}
@@ -0,0 +1,133 @@
+package fp_csharp_unity.unity.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue of events from Java to C#.
+ * <p>
+ * Producers on any thread {@link #offer(int, long, String)} an event id, a primitive payload and an
+ * optional string. C# calls {@link #drain()} once per frame, which writes all waiting events into
+ * {@link #buffer()}, a reused direct buffer C# reads through {@code GetDirectBufferAddress},
+ * instead of getting a JNI upcall per event on the thread that produced it. Draining does not
+ * allocate. Every event takes {@link #EVENT_SIZE} native order bytes:
+ * <pre>
+ * long payload, int eventId, int hasString (0 or 1)
+ * </pre>
+ * Strings, if any event has one, are fetched with one more call to {@link #drainedStrings()}.
+ * <p>
+ * Managed arrays can not be used for the handoff, because Unity's {@code AndroidJavaObject.CallStatic}
+ * passes copies of them and does not copy them back.
+ * <p>
+ * Event ids are defined by the producers, e.g. {@code VideoEventForwarder}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class PluginEventQueue {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** Size of one drained event in {@link #buffer()}, in bytes. */
+    public static final int EVENT_SIZE = 16;
+
+    private static volatile PluginEventQueue shared;
+
+    /** Plugin-wide queue with {@link #DEFAULT_CAPACITY}, created on first use. */
+    public static PluginEventQueue shared() {
+        PluginEventQueue queue = shared;
+        if (queue == null) {
+            synchronized (PluginEventQueue.class) {
+                queue = shared;
+                if (queue == null) shared = queue = new PluginEventQueue(DEFAULT_CAPACITY);
+            }
+        }
+        return queue;
+    }
+
+    private final BoundedMpscSequencer sequencer;
+    private final int[] ids;
+    private final long[] payloads;
+    private final String[] strings;
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Only touched by the draining thread.
+    private final ByteBuffer buffer;
+    // Strings of the last drain by event, null where there is none.
+    private final String[] drainedStrings;
+    private int drainedCount;
+
+    /** @param capacity rounded up to the next power of two. */
+    public PluginEventQueue(int capacity) {
+        sequencer = new BoundedMpscSequencer(capacity);
+        ids = new int[sequencer.capacity];
+        payloads = new long[sequencer.capacity];
+        strings = new String[sequencer.capacity];
+        buffer = ByteBuffer.allocateDirect(sequencer.capacity * EVENT_SIZE).order(ByteOrder.nativeOrder());
+        drainedStrings = new String[sequencer.capacity];
+    }
+
+    /** Buffer {@link #drain()} writes the events into. */
+    public ByteBuffer buffer() { return buffer; }
+
+    public int capacity() { return sequencer.capacity; }
+
+    /** Number of events waiting to be drained. Approximate while producers are running. */
+    public int size() { return sequencer.size(); }
+
+    /** Number of events that did not fit into the queue. */
+    public long droppedCount() { return dropped.get(); }
+
+    public boolean offer(int eventId) { return offer(eventId, 0, null); }
+
+    public boolean offer(int eventId, long payload) { return offer(eventId, payload, null); }
+
+    /** @return false if the queue is full and the event was dropped. */
+    public boolean offer(int eventId, long payload, String string) {
+        long position = sequencer.tryClaim();
+        if (position == -1) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        int idx = sequencer.index(position);
+        ids[idx] = eventId;
+        payloads[idx] = payload;
+        strings[idx] = string;
+        sequencer.publish(position);
+        return true;
+    }
+
+    /**
+     * Moves all waiting events into {@link #buffer()}, in the order they were offered. Only one
+     * thread may drain at a time, and the previous drain must have been read before.
+     *
+     * @return number of events written.
+     */
+    public int drain() {
+        String[] drainedStrings = this.drainedStrings;
+        int previousCount = drainedCount;
+        int count = 0;
+        long position;
+        while (count < drainedStrings.length && (position = sequencer.tryPeek()) != -1) {
+            int idx = sequencer.index(position);
+            int offset = count * EVENT_SIZE;
+            String string = strings[idx];
+            buffer.putLong(offset, payloads[idx]);
+            buffer.putInt(offset + 8, ids[idx]);
+            buffer.putInt(offset + 12, string == null ? 0 : 1);
+            drainedStrings[count] = string;
+            strings[idx] = null;
+            sequencer.release(position);
+            count++;
+        }
+        // Do not keep strings of the previous drain alive.
+        if (previousCount > count) Arrays.fill(drainedStrings, count, previousCount, null);
+        drainedCount = count;
+        return count;
+    }
+
+    /**
+     * Strings of the events written by the last {@link #drain()}, indexed by event, null for events
+     * without one. The array is reused, entries past the drained count are null.
+     */
+    public String[] drainedStrings() { return drainedStrings; }
+}
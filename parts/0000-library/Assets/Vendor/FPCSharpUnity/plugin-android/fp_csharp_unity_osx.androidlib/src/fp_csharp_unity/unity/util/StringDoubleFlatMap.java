@@ -0,0 +1,26 @@
+package fp_csharp_unity.unity.util;
+
+/**
+ * String to double map over parallel key/value arrays passed from C#. See {@link StringKeyedFlatMap}.
+ */
+@SuppressWarnings("unused")
+public class StringDoubleFlatMap extends StringKeyedFlatMap {
+    private double[] values;
+
+    public StringDoubleFlatMap() { reset(new String[0], new double[0]); }
+
+    public StringDoubleFlatMap(String[] keys, double[] values) { reset(keys, values); }
+
+    /** Reuses this map for another payload. The arrays are used as is, not copied. */
+    public void reset(String[] keys, double[] values) {
+        indexKeys(keys, values.length);
+        this.values = values;
+    }
+
+    public double get(String key, double defaultValue) {
+        int idx = indexOf(key);
+        return idx == -1 ? defaultValue : values[idx];
+    }
+
+    public double valueAt(int index) { return values[index]; }
+}
@@ -0,0 +1,61 @@
+package fp_csharp_unity.unity.util;
+
+/**
+ * Base for flat maps that index a {@code String[]} of keys in place, without copying it.
+ * <p>
+ * If a key is present more than once, the last value wins, same as {@link java.util.HashMap#put}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public abstract class StringKeyedFlatMap {
+    private static final String[] NO_KEYS = new String[0];
+
+    private final FlatHashIndex index = new FlatHashIndex();
+    private String[] keys = NO_KEYS;
+
+    protected final void indexKeys(String[] keys, int valuesLength) {
+        if (keys.length != valuesLength) throw new IllegalArgumentException(
+            "keys size (" + keys.length + ") != values size (" + valuesLength + ")"
+        );
+
+        this.keys = keys;
+        index.reset(keys.length);
+        int[] slots = index.slots;
+        int mask = index.mask;
+        for (int idx = 0; idx < keys.length; idx++) {
+            String key = keys[idx];
+            int slot = FlatHashIndex.mix(hash(key)) & mask;
+            while (true) {
+                int existing = slots[slot];
+                if (existing == 0 || equal(keys[existing - 1], key)) {
+                    slots[slot] = idx + 1;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+
+    /** @return index of the key in the keys array or -1 if it is not present. */
+    public final int indexOf(String key) {
+        int[] slots = index.slots;
+        int mask = index.mask;
+        int slot = FlatHashIndex.mix(hash(key)) & mask;
+        while (true) {
+            int existing = slots[slot];
+            if (existing == 0) return -1;
+            if (equal(keys[existing - 1], key)) return existing - 1;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public final boolean containsKey(String key) { return indexOf(key) != -1; }
+
+    /** Number of entries in the backing arrays, including overridden duplicate keys. */
+    public final int size() { return keys.length; }
+
+    public final String keyAt(int index) { return keys[index]; }
+
+    private static int hash(String key) { return key == null ? 0 : key.hashCode(); }
+
+    private static boolean equal(String a, String b) { return a == null ? b == null : a.equals(b); }
+}
@@ -0,0 +1,26 @@
+package fp_csharp_unity.unity.util;
+
+/**
+ * String to long map over parallel key/value arrays passed from C#. See {@link StringKeyedFlatMap}.
+ */
+@SuppressWarnings("unused")
+public class StringLongFlatMap extends StringKeyedFlatMap {
+    private long[] values;
+
+    public StringLongFlatMap() { reset(new String[0], new long[0]); }
+
+    public StringLongFlatMap(String[] keys, long[] values) { reset(keys, values); }
+
+    /** Reuses this map for another payload. The arrays are used as is, not copied. */
+    public void reset(String[] keys, long[] values) {
+        indexKeys(keys, values.length);
+        this.values = values;
+    }
+
+    public long get(String key, long defaultValue) {
+        int idx = indexOf(key);
+        return idx == -1 ? defaultValue : values[idx];
+    }
+
+    public long valueAt(int index) { return values[index]; }
+}
@@ -0,0 +1,27 @@
+package fp_csharp_unity.unity.util;
+
+/**
+ * String to String map over parallel key/value arrays passed from C#. See {@link StringKeyedFlatMap}.
+ */
+@SuppressWarnings("unused")
+public class StringStringFlatMap extends StringKeyedFlatMap {
+    private String[] values;
+
+    public StringStringFlatMap() { reset(new String[0], new String[0]); }
+
+    public StringStringFlatMap(String[] keys, String[] values) { reset(keys, values); }
+
+    /** Reuses this map for another payload. The arrays are used as is, not copied. */
+    public void reset(String[] keys, String[] values) {
+        indexKeys(keys, values.length);
+        this.values = values;
+    }
+
+    /** @return the value or null if the key is not present. */
+    public String get(String key) {
+        int idx = indexOf(key);
+        return idx == -1 ? null : values[idx];
+    }
+
+    public String valueAt(int index) { return values[index]; }
+}
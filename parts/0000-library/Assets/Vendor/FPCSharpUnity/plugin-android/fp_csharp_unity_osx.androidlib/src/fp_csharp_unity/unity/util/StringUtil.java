@@ -1,13 +1,160 @@
 package fp_csharp_unity.unity.util;
 
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
 @SuppressWarnings("unused")
 public class StringUtil {
+    // Scratch space for the shift operations, so they do not allocate a char[] per call.
+    private static final ThreadLocal<char[]> buffers = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[256];
+        }
+    };
+
+    // shiftBy -> (encoded -> decoded), see shiftCharValuesCached.
+    private static final ConcurrentHashMap<Integer, ConcurrentHashMap<String, String>> shiftCache =
+        new ConcurrentHashMap<>();
+
+    private static char[] buffer(int length) {
+        char[] buffer = buffers.get();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+            buffers.set(buffer);
+        }
+        return buffer;
+    }
+
     public static String shiftCharValues(String s, int shiftBy) {
-        char[] chars = s.toCharArray();
-        char[] shifted = new char[chars.length];
-        for (int idx = 0; idx < chars.length; idx++) {
-            shifted[idx] = (char) (chars[idx] + shiftBy);
+        int length = s.length();
+        char[] chars = buffer(length);
+        s.getChars(0, length, chars, 0);
+        for (int idx = 0; idx < length; idx++) {
+            chars[idx] = (char) (chars[idx] + shiftBy);
+        }
+        return new String(chars, 0, length);
+    }
+
+    /** Shifts every string of the array. */
+    public static String[] shiftCharValues(String[] strings, int shiftBy) {
+        String[] shifted = new String[strings.length];
+        for (int idx = 0; idx < strings.length; idx++) {
+            shifted[idx] = shiftCharValues(strings[idx], shiftBy);
+        }
+        return shifted;
+    }
+
+    /**
+     * Splits {@code blob} by {@code delimiter} and shifts every part, in a single pass over the blob.
+     * The delimiter itself is not shifted.
+     */
+    public static String[] shiftDelimited(String blob, char delimiter, int shiftBy) {
+        int length = blob.length();
+        char[] chars = buffer(length);
+        blob.getChars(0, length, chars, 0);
+
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        for (int idx = 0; idx < length; idx++) {
+            char c = chars[idx];
+            if (c == delimiter) {
+                parts.add(new String(chars, start, idx - start));
+                start = idx + 1;
+            }
+            else {
+                chars[idx] = (char) (c + shiftBy);
+            }
         }
-        return new String(shifted);
+        parts.add(new String(chars, start, length - start));
+        return parts.toArray(new String[0]);
+    }
+
+    /**
+     * Writes the shifted characters of {@code s} into {@code out} without creating a String.
+     *
+     * @return number of characters written.
+     * @throws BufferOverflowException if {@code out} does not have enough space left.
+     */
+    public static int shiftCharValues(String s, int shiftBy, CharBuffer out) {
+        int length = s.length();
+        if (out.remaining() < length) throw new BufferOverflowException();
+        for (int idx = 0; idx < length; idx++) {
+            out.put((char) (s.charAt(idx) + shiftBy));
+        }
+        return length;
+    }
+
+    /**
+     * Writes the shifted characters of {@code s} as UTF-8 into {@code out} starting at {@code offset},
+     * for handing the result over JNI without creating a String.
+     *
+     * @return number of bytes written or -1 if {@code out} does not have enough space.
+     */
+    public static int shiftCharValuesUtf8(String s, int shiftBy, byte[] out, int offset) {
+        int length = s.length();
+        int position = offset;
+        for (int idx = 0; idx < length; idx++) {
+            int c = (char) (s.charAt(idx) + shiftBy);
+            if (Character.isHighSurrogate((char) c) && idx + 1 < length) {
+                char low = (char) (s.charAt(idx + 1) + shiftBy);
+                if (Character.isLowSurrogate(low)) {
+                    c = Character.toCodePoint((char) c, low);
+                    idx++;
+                }
+            }
+
+            if (c < 0x80) {
+                if (position + 1 > out.length) return -1;
+                out[position++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                if (position + 2 > out.length) return -1;
+                out[position++] = (byte) (0xC0 | (c >> 6));
+                out[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (c < 0x10000) {
+                if (position + 3 > out.length) return -1;
+                out[position++] = (byte) (0xE0 | (c >> 12));
+                out[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else {
+                if (position + 4 > out.length) return -1;
+                out[position++] = (byte) (0xF0 | (c >> 18));
+                out[position++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+                out[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position - offset;
+    }
+
+    /**
+     * Same as {@link #shiftCharValues(String, int)}, but remembers the result, so decoding the same
+     * constant again does not allocate. The cache is never trimmed, only use this for a bounded set
+     * of strings, like obfuscated constants.
+     */
+    public static String shiftCharValuesCached(String s, int shiftBy) {
+        ConcurrentHashMap<String, String> cache = shiftCache.get(shiftBy);
+        if (cache == null) {
+            ConcurrentHashMap<String, String> created = new ConcurrentHashMap<>();
+            cache = shiftCache.putIfAbsent(shiftBy, created);
+            if (cache == null) cache = created;
+        }
+
+        String shifted = cache.get(s);
+        if (shifted == null) {
+            shifted = shiftCharValues(s, shiftBy);
+            cache.put(s, shifted);
+        }
+        return shifted;
+    }
+
+    public static void clearShiftCache() {
+        shiftCache.clear();
     }
 }
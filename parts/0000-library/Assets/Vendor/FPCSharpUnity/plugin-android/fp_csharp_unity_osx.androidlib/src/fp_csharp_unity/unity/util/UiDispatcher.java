@@ -0,0 +1,157 @@
+package fp_csharp_unity.unity.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import fp_csharp_unity.unity.Tag;
+import fp_csharp_unity.unity.logging.Log;
+import fp_csharp_unity.unity.metrics.Counter;
+import fp_csharp_unity.unity.metrics.Gauge;
+import fp_csharp_unity.unity.metrics.LatencyHistogram;
+import fp_csharp_unity.unity.metrics.Metrics;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs work on the main looper in batches.
+ * <p>
+ * Work items from any thread go into a lock-free multi-producer single-consumer queue and are all
+ * drained by a single {@link Handler} message, instead of posting one message per item. Calls made
+ * on the main looper run inline, after the items that were queued before them.
+ * <p>
+ * Items can have a coalescing key: if several items with the same key are waiting, only the latest
+ * one runs, at its own position in the queue.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class UiDispatcher {
+    // Shared by all dispatchers, declared before instance so they are initialized when it is created.
+    private static final LatencyHistogram latencyMetric = Metrics.histogram("ui.dispatch.latency");
+    private static final Counter coalescedMetric = Metrics.counter("ui.dispatch.coalesced");
+    private static final Gauge depthMetric = Metrics.gauge("ui.dispatch.depth");
+
+    public static final UiDispatcher instance = new UiDispatcher(Looper.getMainLooper());
+
+    private static final class Item {
+        final String label;
+        final Object key;
+        final Runnable f;
+        final long enqueuedAtNanos;
+        volatile Item next;
+
+        Item(String label, Object key, Runnable f, long enqueuedAtNanos) {
+            this.label = label;
+            this.key = key;
+            this.f = f;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+    }
+
+    private final Looper looper;
+    private final Handler handler;
+    private final Runnable drainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            scheduled.set(false);
+            drain();
+        }
+    };
+
+    // Vyukov intrusive MPSC queue: producers swap the tail, the consumer owns the head.
+    private final AtomicReference<Item> tail;
+    private Item head;
+    private final ConcurrentHashMap<Object, Item> latestByKey = new ConcurrentHashMap<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // Only accessed from the looper thread.
+    private boolean draining;
+
+    private final AtomicInteger depth = new AtomicInteger();
+    private volatile int maxDepth;
+    // Only written from the looper thread.
+    private volatile long executed, coalesced, totalLatencyNanos, maxLatencyNanos;
+
+    public UiDispatcher(Looper looper) {
+        this.looper = looper;
+        handler = new Handler(looper);
+        Item stub = new Item(null, null, null, 0);
+        head = stub;
+        tail = new AtomicReference<>(stub);
+    }
+
+    public boolean isOnLooperThread() { return Looper.myLooper() == looper; }
+
+    /**
+     * Runs {@code f} on the looper thread, logging anything it throws.
+     *
+     * @param key if not null, supersedes items with an equal key that are still waiting.
+     */
+    public void dispatch(String logLabel, Object key, Runnable f) {
+        if (isOnLooperThread() && !draining) {
+            // Keep the order of calls: everything queued before this call runs first.
+            // The drain consumed the entries of the queued items. An inline run has no entry, and a
+            // remaining one belongs to an item another thread queued meanwhile, which has to run.
+            drain();
+            long now = System.nanoTime();
+            run(logLabel, f);
+            recordExecuted(System.nanoTime() - now);
+            return;
+        }
+
+        Item item = new Item(logLabel, key, f, System.nanoTime());
+        if (key != null) latestByKey.put(key, item);
+        int currentDepth = depth.incrementAndGet();
+        if (currentDepth > maxDepth) maxDepth = currentDepth;
+        depthMetric.set(currentDepth);
+        Item previous = tail.getAndSet(item);
+        previous.next = item;
+
+        if (scheduled.compareAndSet(false, true)) handler.post(drainRunnable);
+    }
+
+    private void drain() {
+        draining = true;
+        try {
+            Item item;
+            while ((item = head.next) != null) {
+                head = item;
+                depth.decrementAndGet();
+                if (item.key != null && !latestByKey.remove(item.key, item)) {
+                    coalesced++;
+                    coalescedMetric.increment();
+                    continue;
+                }
+                run(item.label, item.f);
+                recordExecuted(System.nanoTime() - item.enqueuedAtNanos);
+            }
+        }
+        finally {
+            draining = false;
+            depthMetric.set(depth.get());
+        }
+    }
+
+    private static void run(String logLabel, Runnable f) {
+        try {
+            f.run();
+        } catch (Throwable e) {
+            Log.log(Log.ERROR, Tag.TAG, "Error running [{}] on UI thread", logLabel, e);
+        }
+    }
+
+    private void recordExecuted(long latencyNanos) {
+        executed++;
+        totalLatencyNanos += latencyNanos;
+        if (latencyNanos > maxLatencyNanos) maxLatencyNanos = latencyNanos;
+        latencyMetric.record(latencyNanos);
+    }
+
+    /**
+     * Statistics as [executed items, coalesced items, current queue depth, max queue depth,
+     * total time from dispatch to finished execution in nanoseconds, max of that time].
+     */
+    public long[] stats() {
+        return new long[] {
+            executed, coalesced, depth.get(), maxDepth, totalLatencyNanos, maxLatencyNanos
+        };
+    }
+}
@@ -1,21 +1,16 @@
 package fp_csharp_unity.unity.util;
 
-import fp_csharp_unity.unity.Tag;
-import fp_csharp_unity.unity.logging.Log;
-import com.unity3d.player.UnityPlayer;
-
 @SuppressWarnings("unused")
 public class Utils {
     public static void runOnUiSafe(final String logLabel, final Runnable f) {
-        UnityPlayer.currentActivity.runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    f.run();
-                } catch (Throwable e) {
-                    Log.log(Log.ERROR, Tag.TAG, "Error running [" + logLabel + "] on UI thread", e);
-                }
-            }
-        });
+        UiDispatcher.instance.dispatch(logLabel, null, f);
+    }
+
+    /**
+     * Same as {@link #runOnUiSafe(String, Runnable)}, but if several calls with an equal key are still
+     * waiting to run, only the latest one runs.
+     */
+    public static void runOnUiSafe(final String logLabel, final Object coalesceKey, final Runnable f) {
+        UiDispatcher.instance.dispatch(logLabel, coalesceKey, f);
     }
 }
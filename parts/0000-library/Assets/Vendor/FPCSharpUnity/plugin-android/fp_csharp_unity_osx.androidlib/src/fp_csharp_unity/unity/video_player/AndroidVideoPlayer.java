@@ -9,14 +9,10 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.widget.Button;
 import android.widget.VideoView;
+import fp_csharp_unity.unity.fns.Act1;
 import fp_csharp_unity.unity.logging.Log;
 import fp_csharp_unity.unity.android.R;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.URL;
 
 public class AndroidVideoPlayer extends Activity {
   static final String TAG = "FPCSharpUnity-AndroidVideoPlayer";
@@ -28,7 +24,7 @@ public class AndroidVideoPlayer extends Activity {
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.media_player_layout);
-    VideoView videoView = (VideoView) findViewById(R.id.video_display);
+    final VideoView videoView = (VideoView) findViewById(R.id.video_display);
     Button closeButton = (Button) findViewById(R.id.close_button);
     // This is needed so the listener wouldn't change if for some reason new Activity was created before closing the first one
     final VideoPlayerListener listenerInstance = listener;
@@ -59,13 +55,23 @@ public class AndroidVideoPlayer extends Activity {
       }
     });
 
-    File file = extractFromResource("/assets/" + fileName);
-    if (file != null) {
-      videoView.setVideoPath(file.getAbsolutePath());
-      videoView.requestFocus();
-      videoView.start();
-    }
-    else closeActivity();
+    // VideoView only plays from paths and URIs, so the video is played from the extracted copy.
+    // Use VideoCache.warm before starting this activity to have it ready.
+    VideoCache.get(this, fileName, new Act1<File>() {
+      @Override
+      public void run(File file) {
+        if (isFinishing()) return;
+        if (file != null) {
+          videoView.setVideoPath(file.getAbsolutePath());
+          videoView.requestFocus();
+          videoView.start();
+        }
+        else {
+          Log.log(Log.ERROR, TAG, "Error: can't extract video {}", fileName);
+          closeActivity();
+        }
+      }
+    });
   }
 
   static void setListener(VideoPlayerListener videoListener) {
@@ -78,37 +84,8 @@ public class AndroidVideoPlayer extends Activity {
       i.setData(Uri.parse(url));
       startActivity(i);
     } catch (Exception ex) {
-      Log.log(Log.ERROR, TAG, ex.toString());
-    }
-  }
-
-  private File extractFromResource(String resource) {
-    File file = null;
-    URL res = getClass().getResource(resource);
-    if (res.toString().startsWith("jar:")) {
-      try {
-        InputStream input = getClass().getResourceAsStream(resource);
-        file = File.createTempFile("tempfile", ".tmp");
-        OutputStream out = new FileOutputStream(file);
-        int read;
-        byte[] bytes = new byte[1024];
-
-        while ((read = input.read(bytes)) != -1) {
-          out.write(bytes, 0, read);
-        }
-        file.deleteOnExit();
-      } catch (IOException ex) {
-        Log.log(Log.ERROR, TAG, ex.toString());
-      }
-    } else {
-      //this will probably work in your IDE, but not from a JAR
-      file = new File(res.getFile());
-    }
-
-    if (file == null || !file.exists()) {
-      Log.log(Log.ERROR, TAG, "Error: File " + file + " not found!");
+      Log.log(Log.ERROR, TAG, "Can't open url {}", url, ex);
     }
-    return file;
   }
 
   void closeActivity() {
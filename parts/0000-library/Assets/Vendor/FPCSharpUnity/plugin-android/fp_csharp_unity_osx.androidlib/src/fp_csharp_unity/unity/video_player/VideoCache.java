@@ -0,0 +1,246 @@
+package fp_csharp_unity.unity.video_player;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import fp_csharp_unity.unity.fns.Act1;
+import fp_csharp_unity.unity.logging.Log;
+import fp_csharp_unity.unity.metrics.Counter;
+import fp_csharp_unity.unity.metrics.LatencyHistogram;
+import fp_csharp_unity.unity.metrics.Metrics;
+import fp_csharp_unity.unity.util.FileCaches;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Disk cache of videos extracted from the APK assets.
+ * <p>
+ * Files are named after a hash of the asset name and the APK version, so every asset is extracted
+ * once per installed version. The cache directory is kept under {@link #setMaxBytes(long)} by
+ * deleting the least recently used files.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class VideoCache {
+  static final String TAG = "FPCSharpUnity-VideoCache";
+  static final String DIR_NAME = "fp_csharp_unity_video_cache";
+  static final int COPY_BUFFER_SIZE = 256 * 1024;
+
+  private static final LatencyHistogram extractMetric = Metrics.histogram("video.extract");
+  private static final Counter
+    hitMetric = Metrics.counter("video.cache.hit"),
+    missMetric = Metrics.counter("video.cache.miss"),
+    extractedBytesMetric = Metrics.counter("video.extract.bytes");
+
+  private static volatile long maxBytes = 100 * 1024 * 1024;
+  private static volatile String apkVersion;
+
+  private static final ConcurrentHashMap<String, Future<File>> inFlight = new ConcurrentHashMap<>();
+  private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "FPCSharpUnity-VideoCache");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+  private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  public static void setMaxBytes(long maxBytes) { VideoCache.maxBytes = maxBytes; }
+
+  /** Reads the package info the cache keys depend on, see {@code PluginInitializer}. */
+  public static void prewarm(Context context) {
+    apkVersion(context.getApplicationContext());
+  }
+
+  /** Extracts the asset in the background, so the player can start without waiting for it. */
+  public static void warm(Context context, String assetName) {
+    submit(context.getApplicationContext(), assetName);
+  }
+
+  /**
+   * Resolves the cached file in the background and calls back on the main thread.
+   * {@code onResolved} gets null if the asset could not be extracted.
+   */
+  public static void get(Context context, String assetName, final Act1<File> onResolved) {
+    final Future<File> future = submit(context.getApplicationContext(), assetName);
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        final File file = await(future);
+        mainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            onResolved.run(file);
+          }
+        });
+      }
+    });
+  }
+
+  /** Blocking version of {@link #get(Context, String, Act1)}. Returns null if extraction failed. */
+  public static File getBlocking(Context context, String assetName) {
+    return await(submit(context.getApplicationContext(), assetName));
+  }
+
+  /**
+   * Opens the asset straight from the APK if it is stored uncompressed, which needs no copy at all.
+   *
+   * @return null if the asset is compressed and has to be extracted through the cache.
+   */
+  public static AssetFileDescriptor openUncompressed(Context context, String assetName) {
+    try {
+      return context.getAssets().openFd(assetName);
+    } catch (FileNotFoundException e) {
+      // Compressed assets can't be opened as file descriptors.
+      return null;
+    } catch (IOException e) {
+      Log.log(Log.WARN, TAG, "Can't open asset [{}] as a file descriptor", assetName, e);
+      return null;
+    }
+  }
+
+  private static File await(Future<File> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      Log.log(Log.ERROR, TAG, "Failed to extract video", e.getCause());
+      return null;
+    }
+  }
+
+  private static Future<File> submit(final Context context, final String assetName) {
+    final String key = cacheKey(context, assetName);
+    Future<File> existing = inFlight.get(key);
+    if (existing != null) return existing;
+
+    // Extraction runs on a single thread, so everything submitted for a key ends up using the
+    // same file and the in-flight entry only deduplicates the work. The task is only started once
+    // it is in the map, otherwise it could finish and remove itself before being added, leaving a
+    // stale entry behind.
+    FutureTask<File> task = new FutureTask<File>(new Callable<File>() {
+      @Override
+      public File call() throws IOException {
+        return extract(context, assetName, key);
+      }
+    }) {
+      @Override
+      protected void done() {
+        inFlight.remove(key, this);
+      }
+    };
+    existing = inFlight.putIfAbsent(key, task);
+    if (existing != null) return existing;
+    executor.execute(task);
+    return task;
+  }
+
+  static File cacheDir(Context context) {
+    return new File(context.getCacheDir(), DIR_NAME);
+  }
+
+  private static File extract(Context context, String assetName, String key) throws IOException {
+    File dir = cacheDir(context);
+    File file = new File(dir, key);
+    if (file.isFile()) {
+      // Keeps the least recently used order for trimming.
+      //noinspection ResultOfMethodCallIgnored
+      file.setLastModified(System.currentTimeMillis());
+      hitMetric.increment();
+      return file;
+    }
+    missMetric.increment();
+    long startNanos = System.nanoTime();
+
+    if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Can't create " + dir);
+    File tmp = new File(dir, key + ".tmp");
+    try (
+      InputStream input = context.getAssets().open(assetName);
+      ReadableByteChannel source = Channels.newChannel(input);
+      FileOutputStream output = new FileOutputStream(tmp);
+      FileChannel target = output.getChannel()
+    ) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+      while (source.read(buffer) != -1 || buffer.position() != 0) {
+        buffer.flip();
+        target.write(buffer);
+        buffer.compact();
+      }
+      target.force(false);
+    } catch (IOException e) {
+      //noinspection ResultOfMethodCallIgnored
+      tmp.delete();
+      throw e;
+    }
+    if (!tmp.renameTo(file)) {
+      //noinspection ResultOfMethodCallIgnored
+      tmp.delete();
+      throw new IOException("Can't rename " + tmp + " to " + file);
+    }
+
+    extractMetric.recordSince(startNanos);
+    extractedBytesMetric.add(file.length());
+
+    FileCaches.trim(dir, maxBytes, file);
+    return file;
+  }
+
+  private static String cacheKey(Context context, String assetName) {
+    String name = assetName + "|" + apkVersion(context);
+    int extensionIdx = assetName.lastIndexOf('.');
+    String extension = extensionIdx == -1 ? "" : assetName.substring(extensionIdx);
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      byte[] hash = digest.digest(name.getBytes(StandardCharsets.UTF_8));
+      StringBuilder sb = new StringBuilder(hash.length * 2 + extension.length());
+      for (byte b : hash) {
+        sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return sb.append(extension).toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String apkVersion(Context context) {
+    String version = apkVersion;
+    if (version != null) return version;
+
+    try {
+      PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+      @SuppressWarnings("deprecation")
+      long versionCode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+        ? info.getLongVersionCode() : info.versionCode;
+      // Update time covers development builds that reuse the version code.
+      version = versionCode + "-" + info.lastUpdateTime;
+    } catch (PackageManager.NameNotFoundException e) {
+      version = "unknown";
+    }
+    apkVersion = version;
+    return version;
+  }
+}
@@ -0,0 +1,39 @@
+package fp_csharp_unity.unity.video_player;
+
+import fp_csharp_unity.unity.Tag;
+import fp_csharp_unity.unity.logging.Log;
+import fp_csharp_unity.unity.util.PluginEventQueue;
+
+/**
+ * {@link VideoPlayerListener} that puts the callbacks into a {@link PluginEventQueue} instead of
+ * calling into C#. The payload of every event is the {@code playerId} given by C#.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class VideoEventForwarder implements VideoPlayerListener {
+  public static final int
+    EVENT_VIDEO_CANCEL = 100,
+    EVENT_VIDEO_COMPLETE = 101,
+    EVENT_VIDEO_CLICK = 102;
+
+  public final PluginEventQueue queue;
+  public final long playerId;
+
+  public VideoEventForwarder(PluginEventQueue queue, long playerId) {
+    this.queue = queue;
+    this.playerId = playerId;
+  }
+
+  /** Forwards to {@link PluginEventQueue#shared()}. */
+  public VideoEventForwarder(long playerId) {
+    this(PluginEventQueue.shared(), playerId);
+  }
+
+  @Override public void onCancel() { offer(EVENT_VIDEO_CANCEL); }
+  @Override public void onVideoComplete() { offer(EVENT_VIDEO_COMPLETE); }
+  @Override public void onVideoClick() { offer(EVENT_VIDEO_CLICK); }
+
+  private void offer(int eventId) {
+    if (!queue.offer(eventId, playerId))
+      Log.log(Log.WARN, Tag.TAG, "VideoEventForwarder: event queue is full, dropped event {}", eventId);
+  }
+}
@@ -0,0 +1,448 @@
+package fp_csharp_unity.unity.video_player;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Intent;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.SurfaceTexture;
+import android.media.MediaPlayer;
+import android.net.Uri;
+import android.os.Bundle;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.Surface;
+import android.view.TextureView;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.FrameLayout;
+import fp_csharp_unity.unity.fns.Act1;
+import fp_csharp_unity.unity.logging.Log;
+import fp_csharp_unity.unity.metrics.LatencyHistogram;
+import fp_csharp_unity.unity.metrics.Metrics;
+import fp_csharp_unity.unity.util.Utils;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Plays videos in a {@link TextureView} laid over the activity, an alternative to starting the
+ * {@link AndroidVideoPlayer} activity, which pauses Unity and sets up a new decoder every time.
+ * <p>
+ * {@link #prepare} loads the video into the player and decodes the first frame while the overlay
+ * is still transparent, so {@link #show()} starts playing right away. One {@link MediaPlayer} is
+ * reused for all videos. {@link VideoPlayerListener} callbacks are the same as in
+ * {@link AndroidVideoPlayer}. All methods can be called from any thread.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class VideoOverlayPlayer {
+  static final String TAG = "FPCSharpUnity-VideoOverlayPlayer";
+
+  private static final LatencyHistogram prepareMetric = Metrics.histogram("video.overlay.prepare");
+
+  private final Activity activity;
+  private final Application application;
+
+  // Everything below is only accessed on the UI thread.
+  private FrameLayout overlay;
+  private TextureView textureView;
+  private Button closeButton;
+  private MediaPlayer player;
+  private Surface surface;
+
+  // Incremented for every prepared video, so callbacks of older ones can be ignored.
+  private int generation;
+  private String fileName, clickUrl;
+  private VideoPlayerListener listener;
+  private Act1<Boolean> onReady;
+  private long prepareStartNanos;
+  private boolean prepared, prewarming, frameReady, showing, playWhenReady, pausedByLifecycle, released;
+
+  private final Application.ActivityLifecycleCallbacks lifecycleCallbacks =
+    new Application.ActivityLifecycleCallbacks() {
+      @Override public void onActivityCreated(Activity a, Bundle savedInstanceState) {}
+      @Override public void onActivityStarted(Activity a) {}
+      @Override public void onActivityStopped(Activity a) {}
+      @Override public void onActivitySaveInstanceState(Activity a, Bundle outState) {}
+      @Override public void onActivityDestroyed(Activity a) {}
+
+      @Override public void onActivityResumed(Activity a) {
+        if (a != activity || !pausedByLifecycle) return;
+        pausedByLifecycle = false;
+        if (showing) player.start();
+      }
+
+      @Override public void onActivityPaused(Activity a) {
+        if (a != activity || !showing || !player.isPlaying()) return;
+        player.pause();
+        pausedByLifecycle = true;
+      }
+    };
+
+  public VideoOverlayPlayer(Activity activity) {
+    this.activity = activity;
+    this.application = activity.getApplication();
+    application.registerActivityLifecycleCallbacks(lifecycleCallbacks);
+  }
+
+  /**
+   * Loads {@code fileName} from the assets and decodes its first frame. Replaces the previously
+   * prepared video, unless it is the same file.
+   *
+   * @param listener can be null.
+   * @param onReady called on the UI thread with true once {@link #show()} can start without delay,
+   *                or false if the video can't be played. Can be null.
+   */
+  public void prepare(
+    final String fileName, final String clickUrl, final VideoPlayerListener listener,
+    final Act1<Boolean> onReady
+  ) {
+    Utils.runOnUiSafe(TAG + " prepare", new Runnable() {
+      @Override
+      public void run() {
+        prepareRunsOnUiThread(fileName, clickUrl, listener, onReady);
+      }
+    });
+  }
+
+  /** Shows the overlay and plays the prepared video, as soon as it is ready. */
+  public void show() {
+    Utils.runOnUiSafe(TAG + " show", new Runnable() {
+      @Override
+      public void run() {
+        if (released || showing) return;
+        if (fileName == null) {
+          Log.log(Log.WARN, TAG, "show() called without prepare()");
+          return;
+        }
+        if (frameReady) startPlaybackRunsOnUiThread();
+        else playWhenReady = true;
+      }
+    });
+  }
+
+  /** Stops and hides the current video without calling the listener. */
+  public void hide() {
+    Utils.runOnUiSafe(TAG + " hide", new Runnable() {
+      @Override
+      public void run() {
+        if (!released) finishRunsOnUiThread();
+      }
+    });
+  }
+
+  /** Releases the player and removes the overlay. This instance can't be used afterwards. */
+  public void release() {
+    Utils.runOnUiSafe(TAG + " release", new Runnable() {
+      @Override
+      public void run() {
+        if (released) return;
+        released = true;
+        application.unregisterActivityLifecycleCallbacks(lifecycleCallbacks);
+        if (player != null) player.release();
+        if (surface != null) surface.release();
+        if (overlay != null) {
+          ViewGroup parent = (ViewGroup) overlay.getParent();
+          if (parent != null) parent.removeView(overlay);
+        }
+        player = null;
+        surface = null;
+        overlay = null;
+      }
+    });
+  }
+
+  private void prepareRunsOnUiThread(
+    String fileName, String clickUrl, VideoPlayerListener listener, Act1<Boolean> onReady
+  ) {
+    if (released) {
+      if (onReady != null) onReady.run(false);
+      return;
+    }
+    ensureCreatedRunsOnUiThread();
+
+    if (fileName.equals(this.fileName) && !showing) {
+      this.clickUrl = clickUrl;
+      this.listener = listener;
+      if (frameReady) {
+        if (onReady != null) onReady.run(true);
+      }
+      else this.onReady = onReady;
+      return;
+    }
+
+    if (showing) finishRunsOnUiThread();
+    else resetRunsOnUiThread();
+    final int currentGeneration = ++generation;
+    this.fileName = fileName;
+    this.clickUrl = clickUrl;
+    this.listener = listener;
+    this.onReady = onReady;
+    prepareStartNanos = System.nanoTime();
+
+    // Uncompressed assets play straight from the APK, others from the extracted copy.
+    AssetFileDescriptor descriptor = VideoCache.openUncompressed(activity, fileName);
+    if (descriptor != null) {
+      try {
+        player.setDataSource(
+          descriptor.getFileDescriptor(), descriptor.getStartOffset(), descriptor.getLength()
+        );
+        player.prepareAsync();
+      } catch (IOException | RuntimeException e) {
+        Log.log(Log.ERROR, TAG, "Can't play video {}", fileName, e);
+        failRunsOnUiThread();
+      } finally {
+        try {
+          descriptor.close();
+        } catch (IOException e) {
+          Log.log(Log.WARN, TAG, "Can't close video {}", fileName, e);
+        }
+      }
+      return;
+    }
+
+    VideoCache.get(activity, fileName, new Act1<File>() {
+      @Override
+      public void run(File file) {
+        if (released || currentGeneration != generation) return;
+        if (file == null) {
+          Log.log(Log.ERROR, TAG, "Error: can't extract video {}", VideoOverlayPlayer.this.fileName);
+          failRunsOnUiThread();
+          return;
+        }
+        try {
+          player.setDataSource(file.getAbsolutePath());
+          player.prepareAsync();
+        } catch (IOException | RuntimeException e) {
+          Log.log(Log.ERROR, TAG, "Can't play video {}", file, e);
+          failRunsOnUiThread();
+        }
+      }
+    });
+  }
+
+  private void ensureCreatedRunsOnUiThread() {
+    if (player != null) return;
+
+    player = new MediaPlayer();
+    player.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
+      @Override
+      public void onPrepared(MediaPlayer mp) {
+        prepared = true;
+        prewarmRunsOnUiThread();
+      }
+    });
+    player.setOnInfoListener(new MediaPlayer.OnInfoListener() {
+      @Override
+      public boolean onInfo(MediaPlayer mp, int what, int extra) {
+        if (what == MediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START) onFirstFrameRunsOnUiThread();
+        return false;
+      }
+    });
+    player.setOnVideoSizeChangedListener(new MediaPlayer.OnVideoSizeChangedListener() {
+      @Override
+      public void onVideoSizeChanged(MediaPlayer mp, int width, int height) {
+        fitVideoRunsOnUiThread();
+      }
+    });
+    player.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
+      @Override
+      public void onCompletion(MediaPlayer mp) {
+        if (!showing) return;
+        VideoPlayerListener listenerInstance = listener;
+        String url = clickUrl;
+        finishRunsOnUiThread();
+        if (listenerInstance != null) listenerInstance.onVideoComplete();
+        openUrl(url);
+      }
+    });
+    player.setOnErrorListener(new MediaPlayer.OnErrorListener() {
+      @Override
+      public boolean onError(MediaPlayer mp, int what, int extra) {
+        Log.log(Log.ERROR, TAG, "Error {} ({}) while playing {}", what, extra, fileName);
+        failRunsOnUiThread();
+        return true;
+      }
+    });
+
+    textureView = new TextureView(activity);
+    textureView.setSurfaceTextureListener(new TextureView.SurfaceTextureListener() {
+      @Override
+      public void onSurfaceTextureAvailable(SurfaceTexture surfaceTexture, int width, int height) {
+        surface = new Surface(surfaceTexture);
+        if (player == null) return;
+        player.setSurface(surface);
+        fitVideoRunsOnUiThread();
+        prewarmRunsOnUiThread();
+      }
+
+      @Override
+      public void onSurfaceTextureSizeChanged(SurfaceTexture surfaceTexture, int width, int height) {
+        fitVideoRunsOnUiThread();
+      }
+
+      @Override
+      public boolean onSurfaceTextureDestroyed(SurfaceTexture surfaceTexture) {
+        if (player != null) player.setSurface(null);
+        if (surface != null) surface.release();
+        surface = null;
+        return true;
+      }
+
+      @Override
+      public void onSurfaceTextureUpdated(SurfaceTexture surfaceTexture) {}
+    });
+    textureView.setOnTouchListener(new View.OnTouchListener() {
+      @Override
+      public boolean onTouch(View v, MotionEvent event) {
+        // Let touches through to Unity while the overlay is transparent.
+        if (!showing) return false;
+        if (event.getActionMasked() == MotionEvent.ACTION_UP) {
+          VideoPlayerListener listenerInstance = listener;
+          String url = clickUrl;
+          // The activity player is left when the url opens, so the overlay closes as well.
+          finishRunsOnUiThread();
+          if (listenerInstance != null) listenerInstance.onVideoClick();
+          openUrl(url);
+        }
+        return true;
+      }
+    });
+
+    float density = activity.getResources().getDisplayMetrics().density;
+    closeButton = new Button(activity);
+    closeButton.setText("X");
+    closeButton.setTextSize(10);
+    closeButton.setVisibility(View.GONE);
+    closeButton.setOnClickListener(new View.OnClickListener() {
+      @Override
+      public void onClick(View v) {
+        VideoPlayerListener listenerInstance = listener;
+        finishRunsOnUiThread();
+        if (listenerInstance != null) listenerInstance.onCancel();
+      }
+    });
+    FrameLayout.LayoutParams closeParams = new FrameLayout.LayoutParams(
+      (int) (30 * density), (int) (30 * density), Gravity.TOP | Gravity.END
+    );
+    closeParams.topMargin = (int) (20 * density);
+    closeParams.setMarginEnd((int) (20 * density));
+
+    overlay = new FrameLayout(activity);
+    overlay.addView(textureView, new FrameLayout.LayoutParams(
+      ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT
+    ));
+    overlay.addView(closeButton, closeParams);
+    // The overlay stays attached, but transparent, so the surface exists for prewarming.
+    overlay.setAlpha(0f);
+    activity.addContentView(overlay, new ViewGroup.LayoutParams(
+      ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT
+    ));
+  }
+
+  /** Plays muted until the first frame is rendered, see {@link #onFirstFrameRunsOnUiThread()}. */
+  private void prewarmRunsOnUiThread() {
+    if (!prepared || surface == null || prewarming || frameReady) return;
+    prewarming = true;
+    player.setVolume(0f, 0f);
+    player.start();
+  }
+
+  private void onFirstFrameRunsOnUiThread() {
+    if (frameReady) return;
+    frameReady = true;
+    prewarming = false;
+    prepareMetric.recordSince(prepareStartNanos);
+    if (playWhenReady) {
+      // The muted prewarm already moved on, start over so nothing is missed.
+      player.seekTo(0);
+      startPlaybackRunsOnUiThread();
+    }
+    else {
+      player.pause();
+      player.seekTo(0);
+    }
+    Act1<Boolean> callback = onReady;
+    onReady = null;
+    if (callback != null) callback.run(true);
+  }
+
+  private void startPlaybackRunsOnUiThread() {
+    showing = true;
+    playWhenReady = false;
+    overlay.setBackgroundColor(Color.BLACK);
+    overlay.setAlpha(1f);
+    overlay.setKeepScreenOn(true);
+    ViewGroup parent = (ViewGroup) overlay.getParent();
+    if (parent != null) parent.bringChildToFront(overlay);
+    closeButton.setVisibility(View.VISIBLE);
+    player.setVolume(1f, 1f);
+    player.start();
+  }
+
+  /** Hides the overlay and resets the player for the next video. */
+  private void finishRunsOnUiThread() {
+    showing = false;
+    pausedByLifecycle = false;
+    if (overlay != null) {
+      overlay.setAlpha(0f);
+      overlay.setBackgroundColor(Color.TRANSPARENT);
+      overlay.setKeepScreenOn(false);
+      closeButton.setVisibility(View.GONE);
+    }
+    resetRunsOnUiThread();
+  }
+
+  private void failRunsOnUiThread() {
+    VideoPlayerListener listenerInstance = showing || playWhenReady ? listener : null;
+    Act1<Boolean> callback = onReady;
+    onReady = null;
+    finishRunsOnUiThread();
+    if (callback != null) callback.run(false);
+    // Same as closing the activity player, so C# does not wait for a video that never plays.
+    if (listenerInstance != null) listenerInstance.onCancel();
+  }
+
+  private void resetRunsOnUiThread() {
+    generation++;
+    if (player != null) {
+      player.reset();
+      if (surface != null) player.setSurface(surface);
+    }
+    fileName = null;
+    clickUrl = null;
+    listener = null;
+    onReady = null;
+    prepared = false;
+    prewarming = false;
+    frameReady = false;
+    playWhenReady = false;
+  }
+
+  /** Scales the texture so the video keeps its aspect ratio inside the overlay. */
+  private void fitVideoRunsOnUiThread() {
+    if (player == null) return;
+    int videoWidth = player.getVideoWidth(), videoHeight = player.getVideoHeight();
+    int viewWidth = textureView.getWidth(), viewHeight = textureView.getHeight();
+    if (videoWidth == 0 || videoHeight == 0 || viewWidth == 0 || viewHeight == 0) return;
+
+    float scale = Math.min((float) viewWidth / videoWidth, (float) viewHeight / videoHeight);
+    Matrix matrix = new Matrix();
+    matrix.setScale(
+      videoWidth * scale / viewWidth, videoHeight * scale / viewHeight, viewWidth / 2f, viewHeight / 2f
+    );
+    textureView.setTransform(matrix);
+  }
+
+  private void openUrl(String url) {
+    if (url == null || url.isEmpty()) return;
+    Intent i = new Intent(Intent.ACTION_VIEW);
+    try {
+      i.setData(Uri.parse(url));
+      activity.startActivity(i);
+    } catch (Exception ex) {
+      Log.log(Log.ERROR, TAG, "Can't open url {}", url, ex);
+    }
+  }
+}